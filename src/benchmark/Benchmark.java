@@ -0,0 +1,25 @@
+package benchmark;
+
+// one operation measured by BenchmarkRunner, set up once per corpus
+public abstract class Benchmark {
+
+	private String name;
+
+	protected Benchmark(String name) {
+		this.name = name;
+	}
+
+	// prepare everything the operation needs that shouldn't be measured
+	public void setUp(Corpus corpus) throws Exception {
+	}
+
+	// one operation over the whole corpus, the result keeps the JIT from dropping the work
+	public abstract long run() throws Exception;
+
+	public void tearDown() throws Exception {
+	}
+
+	public String getName() {
+		return name;
+	}
+}
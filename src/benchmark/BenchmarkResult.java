@@ -0,0 +1,94 @@
+package benchmark;
+
+import java.util.Arrays;
+
+// throughput and allocation of the measured iterations of one benchmark on one corpus
+public class BenchmarkResult {
+
+	private String benchmark;
+	private String corpus;
+	private long bytesPerOp;
+	// per measured iteration
+	private long[] ops;
+	private long[] nanos;
+	// -1 if the JVM can't measure allocation
+	private long allocatedBytes;
+
+	public BenchmarkResult(String benchmark, String corpus, long bytesPerOp, long[] ops, long[] nanos,
+			long allocatedBytes) {
+		this.benchmark = benchmark;
+		this.corpus = corpus;
+		this.bytesPerOp = bytesPerOp;
+		this.ops = ops;
+		this.nanos = nanos;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	// corpus megabytes (2^20 bytes) per second of every iteration, sorted
+	public double[] throughputs() {
+		double[] mbs = new double[ops.length];
+		for (int i = 0; i < ops.length; i++) {
+			mbs[i] = (double) ops[i] * bytesPerOp / (1 << 20) / (nanos[i] / 1e9);
+		}
+		Arrays.sort(mbs);
+		return mbs;
+	}
+
+	public double medianThroughput() {
+		double[] mbs = throughputs();
+		return mbs.length % 2 == 1 ? mbs[mbs.length / 2] : (mbs[mbs.length / 2 - 1] + mbs[mbs.length / 2]) / 2;
+	}
+
+	public double nanosPerOp() {
+		long totalOps = 0;
+		long totalNanos = 0;
+		for (int i = 0; i < ops.length; i++) {
+			totalOps += ops[i];
+			totalNanos += nanos[i];
+		}
+		return (double) totalNanos / totalOps;
+	}
+
+	public double allocatedBytesPerOp() {
+		if (allocatedBytes < 0) return -1;
+		long totalOps = 0;
+		for (long n : ops) {
+			totalOps += n;
+		}
+		return (double) allocatedBytes / totalOps;
+	}
+
+	// allocation rate in megabytes per second, the number -prof gc reports as gc.alloc.rate
+	public double allocationRate() {
+		if (allocatedBytes < 0) return -1;
+		long totalNanos = 0;
+		for (long n : nanos) {
+			totalNanos += n;
+		}
+		return allocatedBytes / (double) (1 << 20) / (totalNanos / 1e9);
+	}
+
+	@Override
+	public String toString() {
+		double[] mbs = throughputs();
+		return String.format("%-17s %-14s %10.1f MB/s [%8.1f, %8.1f] %14.1f us/op %10.1f MB/s alloc %14.0f B/op",
+				benchmark, corpus, medianThroughput(), mbs[0], mbs[mbs.length - 1], nanosPerOp() / 1e3,
+				allocationRate(), allocatedBytesPerOp());
+	}
+
+	public String getBenchmark() {
+		return benchmark;
+	}
+
+	public String getCorpus() {
+		return corpus;
+	}
+
+	public long getBytesPerOp() {
+		return bytesPerOp;
+	}
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+}
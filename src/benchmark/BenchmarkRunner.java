@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.lang.management.ManagementFactory;
+
+// runs a benchmark for a number of warmup and measured iterations of a fixed
+// duration each, an iteration repeats the operation until its time is up
+public class BenchmarkRunner {
+
+	// results of every operation end up here so none of them is dead code
+	private static volatile long blackhole;
+
+	private int warmupIterations;
+	private int measurementIterations;
+	private long iterationNanos;
+	// per thread allocation counter of HotSpot, null on other JVMs
+	private com.sun.management.ThreadMXBean threads;
+
+	public BenchmarkRunner() {
+		this(3, 5, 500);
+	}
+
+	public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+		if (warmupIterations < 0 || measurementIterations < 1 || iterationMillis < 1) {
+			throw new IllegalArgumentException("Invalid iteration settings");
+		}
+		this.warmupIterations = warmupIterations;
+		this.measurementIterations = measurementIterations;
+		this.iterationNanos = iterationMillis * 1000000L;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			this.threads = (com.sun.management.ThreadMXBean) bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		}
+	}
+
+	public BenchmarkResult run(Benchmark benchmark, Corpus corpus) throws Exception {
+		benchmark.setUp(corpus);
+		try {
+			for (int i = 0; i < warmupIterations; i++) {
+				iteration(benchmark, new long[1]);
+			}
+			long[] ops = new long[measurementIterations];
+			long[] nanos = new long[measurementIterations];
+			long allocatedBefore = allocatedBytes();
+			for (int i = 0; i < measurementIterations; i++) {
+				long[] count = new long[1];
+				nanos[i] = iteration(benchmark, count);
+				ops[i] = count[0];
+			}
+			long allocated = threads == null ? -1 : allocatedBytes() - allocatedBefore;
+			return new BenchmarkResult(benchmark.getName(), corpus.getName(), corpus.getData().length, ops, nanos,
+					allocated);
+		} finally {
+			benchmark.tearDown();
+		}
+	}
+
+	// returns the duration of the iteration, count[0] is set to the number of operations
+	private long iteration(Benchmark benchmark, long[] count) throws Exception {
+		long result = 0;
+		long ops = 0;
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			result += benchmark.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while (elapsed < iterationNanos);
+		blackhole += result;
+		count[0] = ops;
+		return elapsed;
+	}
+
+	private long allocatedBytes() {
+		return threads == null ? -1 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	public int getWarmupIterations() {
+		return warmupIterations;
+	}
+
+	public int getMeasurementIterations() {
+		return measurementIterations;
+	}
+
+	public long getIterationMillis() {
+		return iterationNanos / 1000000L;
+	}
+}
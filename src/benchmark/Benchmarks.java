@@ -0,0 +1,349 @@
+package benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import codec.HuffmanCodec;
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanDecoder.DecodeTable;
+import huffmanDecoder.HuffmanDecoder;
+import huffmanEncoder.EncodeTable;
+import huffmanEncoder.Histogram;
+import huffmanEncoder.HuffmanEncoder;
+import io.ByteBufferBitSink;
+import io.ByteBufferBitSource;
+import io.InputStreamBitSource;
+import io.OutputStreamBitSink;
+
+/*
+ * benchmarks of the encoder, decoder, bit I/O and table construction over
+ * generated corpora, every kind of corpus at a tiny and a large size
+ *
+ * usage: Benchmarks [-size bytes] [-warmup n] [-iterations n] [-time ms]
+ *                   [-corpus kind,kind...] [benchmark...]
+ *
+ * throughput is corpus bytes per second, allocation counts the benchmark
+ * thread only, so work handed to the common pool isn't included
+ */
+public class Benchmarks {
+
+	public static final int TINY_SIZE = 4 << 10;
+	public static final int DEFAULT_LARGE_SIZE = 16 << 20;
+	private static final long SEED = 590;
+	// message size of the codec benchmark
+	public static final int MESSAGE_SIZE = 1 << 10;
+
+	public static void main(String[] args) throws Exception {
+		int largeSize = DEFAULT_LARGE_SIZE;
+		int warmup = 3;
+		int iterations = 5;
+		long time = 500;
+		List<String> kinds = Arrays.asList(Corpus.KINDS);
+		List<String> selected = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-size")) largeSize = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-warmup")) warmup = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-iterations")) iterations = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-time")) time = Long.parseLong(args[++i]);
+			else if (args[i].equals("-corpus")) kinds = Arrays.asList(args[++i].split(","));
+			else selected.add(args[i]);
+		}
+
+		File dir = createTempDirectory();
+		try {
+			List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+			for (Benchmark benchmark : all(dir)) {
+				if (selected.isEmpty() || selected.contains(benchmark.getName())) {
+					benchmarks.add(benchmark);
+				}
+			}
+			BenchmarkRunner runner = new BenchmarkRunner(warmup, iterations, time);
+			for (int size : new int[] {TINY_SIZE, largeSize}) {
+				for (String kind : kinds) {
+					Corpus corpus = Corpus.generate(kind, size, SEED);
+					for (Benchmark benchmark : benchmarks) {
+						System.out.println(runner.run(benchmark, corpus));
+					}
+				}
+			}
+		} finally {
+			for (File file : dir.listFiles()) {
+				file.delete();
+			}
+			dir.delete();
+		}
+	}
+
+	// every benchmark, files go to dir
+	public static List<Benchmark> all(final File dir) {
+		final File original = new File(dir, "original.dat");
+		final File encoded = new File(dir, "encoded.dat");
+		final File output = new File(dir, "output.dat");
+		List<Benchmark> benchmarks = new ArrayList<Benchmark>();
+
+		benchmarks.add(new Benchmark("encode") {
+			@Override
+			public void setUp(Corpus corpus) throws IOException {
+				write(original, corpus.getData());
+			}
+
+			@Override
+			public long run() throws Exception {
+				new HuffmanEncoder(original.getPath(), output.getPath()).encode();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("encodeMapped") {
+			@Override
+			public void setUp(Corpus corpus) throws IOException {
+				write(original, corpus.getData());
+			}
+
+			@Override
+			public long run() throws Exception {
+				new HuffmanEncoder(original.getPath(), output.getPath()).encodeMapped();
+				return output.length();
+			}
+		});
+		// fast mode, its ratio next to encodeMapped's is the loss of the estimated table
+		benchmarks.add(new Benchmark("encodeSampled") {
+			@Override
+			public void setUp(Corpus corpus) throws IOException {
+				write(original, corpus.getData());
+			}
+
+			@Override
+			public long run() throws Exception {
+				HuffmanEncoder encoder = new HuffmanEncoder(original.getPath(), output.getPath());
+				encoder.setSampleRatio(HuffmanEncoder.FAST_SAMPLE_RATIO);
+				encoder.encodeMapped();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("encodePipelined") {
+			@Override
+			public void setUp(Corpus corpus) throws IOException {
+				write(original, corpus.getData());
+			}
+
+			@Override
+			public long run() throws Exception {
+				HuffmanEncoder encoder = new HuffmanEncoder(original.getPath(), output.getPath());
+				encoder.setPipelined(true);
+				encoder.encode();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("decode") {
+			@Override
+			public void setUp(Corpus corpus) throws Exception {
+				write(original, corpus.getData());
+				new HuffmanEncoder(original.getPath(), encoded.getPath()).encode();
+			}
+
+			@Override
+			public long run() throws Exception {
+				new HuffmanDecoder(encoded.getPath(), output.getPath()).decode();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("decodePipelined") {
+			@Override
+			public void setUp(Corpus corpus) throws Exception {
+				write(original, corpus.getData());
+				new HuffmanEncoder(original.getPath(), encoded.getPath()).encode();
+			}
+
+			@Override
+			public long run() throws Exception {
+				HuffmanDecoder decoder = new HuffmanDecoder(encoded.getPath(), output.getPath());
+				decoder.setPipelined(true);
+				decoder.decode();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("decodeMapped") {
+			@Override
+			public void setUp(Corpus corpus) throws Exception {
+				write(original, corpus.getData());
+				new HuffmanEncoder(original.getPath(), encoded.getPath()).encode();
+			}
+
+			@Override
+			public long run() throws Exception {
+				new HuffmanDecoder(encoded.getPath(), output.getPath()).decodeMapped();
+				return output.length();
+			}
+		});
+		benchmarks.add(new Benchmark("histogram") {
+			private byte[] data;
+
+			@Override
+			public void setUp(Corpus corpus) {
+				data = corpus.getData();
+			}
+
+			@Override
+			public long run() {
+				return Histogram.count(data, 0, data.length)[data[0] & 0xff];
+			}
+		});
+		benchmarks.add(new Benchmark("tables") {
+			private long[] counts;
+
+			@Override
+			public void setUp(Corpus corpus) {
+				counts = Histogram.count(corpus.getData(), 0, corpus.getData().length);
+			}
+
+			@Override
+			public long run() {
+				int[] lengths = CodeLengths.build(counts, CodeLengths.DEFAULT_MAX_LENGTH);
+				CanonicalCode code = new CanonicalCode(lengths);
+				EncodeTable encodeTable = new EncodeTable(code, true);
+				DecodeTable decodeTable = new DecodeTable(code);
+				return encodeTable.getCode()[0] + decodeTable.lookup(0);
+			}
+		});
+		benchmarks.add(new Benchmark("codecMessages") {
+			private byte[] data;
+			private HuffmanCodec codec;
+			private byte[] compressed;
+			private byte[] decompressed;
+
+			@Override
+			public void setUp(Corpus corpus) {
+				data = corpus.getData();
+				codec = new HuffmanCodec();
+				compressed = new byte[HuffmanCodec.maxCompressedLength(MESSAGE_SIZE)];
+				decompressed = new byte[MESSAGE_SIZE];
+			}
+
+			// round trip of every message, one reused codec and buffers like an RPC layer has
+			@Override
+			public long run() throws Exception {
+				long total = 0;
+				for (int off = 0; off < data.length; off += MESSAGE_SIZE) {
+					int len = Math.min(MESSAGE_SIZE, data.length - off);
+					int size = codec.compress(data, off, len, compressed, 0);
+					codec.decompress(compressed, 0, size, decompressed, 0);
+					total += size;
+				}
+				return total;
+			}
+		});
+		benchmarks.add(new CodewordBenchmark("sinkWrite") {
+			@Override
+			public long run() throws IOException {
+				CountingOutputStream stream = new CountingOutputStream();
+				OutputStreamBitSink sink = new OutputStreamBitSink(stream);
+				for (byte b : data) {
+					sink.write(code[b & 0xff], length[b & 0xff]);
+				}
+				sink.padToWord();
+				return stream.count;
+			}
+		});
+		benchmarks.add(new CodewordBenchmark("bufferSinkWrite") {
+			@Override
+			public long run() throws IOException {
+				ByteBufferBitSink sink = new ByteBufferBitSink(encoded.length + 8);
+				for (byte b : data) {
+					sink.write(code[b & 0xff], length[b & 0xff]);
+				}
+				sink.padToByte();
+				return sink.size();
+			}
+		});
+		benchmarks.add(new CodewordBenchmark("sourceNext") {
+			@Override
+			public long run() throws Exception {
+				InputStreamBitSource source = new InputStreamBitSource(new ByteArrayInputStream(encoded));
+				long sum = 0;
+				for (byte b : data) {
+					sum += source.next(length[b & 0xff]);
+				}
+				return sum;
+			}
+		});
+		benchmarks.add(new CodewordBenchmark("bufferSourceNext") {
+			@Override
+			public long run() throws Exception {
+				ByteBufferBitSource source = new ByteBufferBitSource(encoded);
+				long sum = 0;
+				for (byte b : data) {
+					sum += source.next(length[b & 0xff]);
+				}
+				return sum;
+			}
+		});
+		return benchmarks;
+	}
+
+	// bit I/O of the codewords of the corpus, so the write and read lengths are realistic
+	private abstract static class CodewordBenchmark extends Benchmark {
+		protected byte[] data;
+		protected int[] code;
+		protected int[] length;
+		// the corpus coded with its own canonical code, padded to a whole word
+		protected byte[] encoded;
+
+		protected CodewordBenchmark(String name) {
+			super(name);
+		}
+
+		@Override
+		public void setUp(Corpus corpus) throws IOException {
+			data = corpus.getData();
+			CanonicalCode canonical = new CanonicalCode(CodeLengths.build(Histogram.count(data, 0, data.length),
+					CodeLengths.DEFAULT_MAX_LENGTH));
+			code = canonical.getCode();
+			length = canonical.getLength();
+			ByteBufferBitSink sink = new ByteBufferBitSink(data.length + 8);
+			for (byte b : data) {
+				sink.write(code[b & 0xff], length[b & 0xff]);
+			}
+			sink.padToWord();
+			encoded = sink.toByteArray();
+		}
+	}
+
+	// discards everything written to it
+	private static class CountingOutputStream extends OutputStream {
+		private long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	private static void write(File file, byte[] data) throws IOException {
+		FileOutputStream output = new FileOutputStream(file);
+		try {
+			output.write(data);
+		} finally {
+			output.close();
+		}
+	}
+
+	private static File createTempDirectory() throws IOException {
+		File dir = File.createTempFile("huffman-benchmark", "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("Can't create " + dir);
+		}
+		return dir;
+	}
+}
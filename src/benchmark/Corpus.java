@@ -0,0 +1,99 @@
+package benchmark;
+
+import java.util.Random;
+
+// generated benchmark input, the same seed always gives the same bytes
+public class Corpus {
+
+	public static final String[] KINDS = {"uniform", "zipf", "text", "random"};
+
+	private static final String[] WORDS = {"the", "of", "and", "to", "in", "a", "is", "that", "for", "it",
+			"as", "was", "with", "be", "by", "on", "not", "he", "this", "are", "or", "his", "from", "at",
+			"which", "but", "have", "an", "had", "they", "you", "were", "their", "one", "all", "we", "can",
+			"her", "has", "there", "been", "if", "more", "when", "will", "would", "who", "so", "no",
+			"Huffman", "canonical", "codeword", "length", "table", "decoder", "encoder", "symbol"};
+
+	private String name;
+	private byte[] data;
+
+	private Corpus(String name, byte[] data) {
+		this.name = name;
+		this.data = data;
+	}
+
+	public static Corpus generate(String kind, int size, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		if (kind.equals("uniform")) {
+			// 32 equally likely symbols, exactly 5 bits each
+			for (int i = 0; i < size; i++) {
+				data[i] = (byte) ('A' + random.nextInt(32));
+			}
+		} else if (kind.equals("zipf")) {
+			zipf(data, random);
+		} else if (kind.equals("text")) {
+			text(data, random);
+		} else if (kind.equals("random")) {
+			// all 256 byte values equally likely, incompressible
+			random.nextBytes(data);
+		} else {
+			throw new IllegalArgumentException("Unknown corpus kind " + kind);
+		}
+		return new Corpus(kind + "-" + sizeName(size), data);
+	}
+
+	// byte value r has probability proportional to 1 / (r + 1)
+	private static void zipf(byte[] data, Random random) {
+		double[] cumulative = new double[256];
+		double sum = 0;
+		for (int r = 0; r < 256; r++) {
+			sum += 1.0 / (r + 1);
+			cumulative[r] = sum;
+		}
+		for (int i = 0; i < data.length; i++) {
+			double u = random.nextDouble() * sum;
+			int lo = 0;
+			int hi = 255;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (cumulative[mid] < u) lo = mid + 1;
+				else hi = mid;
+			}
+			data[i] = (byte) lo;
+		}
+	}
+
+	// words with a skewed vocabulary, punctuation and line breaks
+	private static void text(byte[] data, Random random) {
+		int i = 0;
+		int line = 0;
+		while (i < data.length) {
+			// squaring favours the common words at the front
+			double u = random.nextDouble();
+			String word = WORDS[(int) (u * u * WORDS.length)];
+			for (int c = 0; c < word.length() && i < data.length; c++) {
+				data[i++] = (byte) word.charAt(c);
+			}
+			line += word.length() + 1;
+			if (i < data.length) {
+				int p = random.nextInt(20);
+				data[i++] = (byte) (line > 70 ? '\n' : p == 0 ? '.' : p == 1 ? ',' : ' ');
+				if (line > 70) line = 0;
+			}
+		}
+	}
+
+	static String sizeName(long size) {
+		if (size >= (1 << 20) && size % (1 << 20) == 0) return (size >> 20) + "MB";
+		if (size >= (1 << 10) && size % (1 << 10) == 0) return (size >> 10) + "KB";
+		return size + "B";
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public byte[] getData() {
+		return data;
+	}
+}
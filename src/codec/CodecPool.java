@@ -0,0 +1,56 @@
+package codec;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import huffmanCanonical.SharedTables;
+
+/*
+ * codecs over one set of shared tables, either one per thread or borrowed
+ * from a bounded set of idle ones: acquire takes an idle codec or makes a
+ * new one, release resets it and keeps it unless capacity codecs are idle
+ * already, so neither blocks nor allocates once the pool is warm
+ */
+public class CodecPool {
+
+	private SharedTables tables;
+	private BlockingQueue<HuffmanCodec> idle;
+	private ThreadLocal<HuffmanCodec> local;
+
+	public CodecPool(final SharedTables tables, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid pool capacity " + capacity);
+		}
+		this.tables = tables;
+		this.idle = new ArrayBlockingQueue<HuffmanCodec>(capacity);
+		this.local = new ThreadLocal<HuffmanCodec>() {
+			@Override
+			protected HuffmanCodec initialValue() {
+				return new HuffmanCodec(tables);
+			}
+		};
+	}
+
+	public HuffmanCodec acquire() {
+		HuffmanCodec codec = idle.poll();
+		return codec != null ? codec : new HuffmanCodec(tables);
+	}
+
+	public void release(HuffmanCodec codec) {
+		codec.reset();
+		idle.offer(codec);
+	}
+
+	// the calling thread's own codec, never shared with another thread
+	public HuffmanCodec local() {
+		return local.get();
+	}
+
+	public int getIdle() {
+		return idle.size();
+	}
+
+	public SharedTables getTables() {
+		return tables;
+	}
+}
@@ -0,0 +1,300 @@
+package codec;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.CompactLengths;
+import huffmanCanonical.MessageFormat;
+import huffmanCanonical.SharedTables;
+import huffmanDecoder.DecodeTable;
+import huffmanEncoder.EncodeTable;
+import huffmanEncoder.Histogram;
+import io.ByteBufferBitSink;
+import io.ByteBufferBitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * in-memory compression of buffers in the message format, for callers that
+ * compress many small buffers: an instance keeps every array it needs, the
+ * bit sink and source and encode and decode tables that are rebuilt in
+ * place when a message needs other codeword lengths, one of each for
+ * shared tables and one for inline ones so mixed traffic doesn't rebuild
+ * the shared table every time; once warmed up a call allocates nothing
+ *
+ * a message is coded into a buffer of the codec's own, which grows to the
+ * largest message, and copied to dst, so nothing past the compressed size
+ * is touched and the byte order of the caller's buffers doesn't matter
+ *
+ * byte[] arguments are wrapped once and the wrapper is reused as long as
+ * the same arrays come back, only ByteBuffer arguments never allocate
+ * (little-endian sources to decompress take one view per call); codes
+ * that need package-merge (inputs of more than about 1500 bytes with very
+ * skewed counts) allocate while building their lengths
+ *
+ * not thread-safe, share instances through a CodecPool
+ */
+public class HuffmanCodec {
+
+	// most bytes in front of the codewords: table id, a length table of 256
+	// symbols in a bitmap with 5-bit lengths, a count of up to 5 bytes
+	public static final int MAX_HEADER_SIZE = (16 + 3 + 9 + 256 + 256 * 5 + 40 + 7) / 8;
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+	private static final int INLINE_SLOT = 0;
+	private static final int SHARED_SLOT = 1;
+
+	private SharedTables tables;
+	private int maxCodeLength;
+
+	// histogram and code length workspace
+	private long[] counts;
+	private int[] sub;
+	private long[] work;
+	private int[] lengths;
+
+	// per slot, INLINE_SLOT or SHARED_SLOT: lengths the tables were last built from,
+	// -1s when the decode table has to be rebuilt
+	private int[][] encodeLengths;
+	private CanonicalCode[] encodeCodes;
+	private EncodeTable[] encodeTables;
+	private int[][] decodeLengths;
+	private CanonicalCode[] decodeCodes;
+	private DecodeTable[] decodeTables;
+
+	private ByteBufferBitSink sink;
+	// messages are coded here and copied to dst, 8 spare bytes for the 64-bit stores of the sink
+	private ByteBuffer scratch;
+	private ByteBufferBitSource source;
+	// wrappers of the byte[] arguments of the last compress and decompress
+	private ByteBuffer compressSrc;
+	private ByteBuffer compressDst;
+	private ByteBuffer decompressSrc;
+	private ByteBuffer decompressDst;
+
+	public HuffmanCodec() {
+		this(new SharedTables());
+	}
+
+	public HuffmanCodec(SharedTables tables) {
+		this.tables = tables;
+		this.maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		this.counts = new long[SharedTables.ALPHABET_SIZE];
+		this.sub = new int[4 * SharedTables.ALPHABET_SIZE];
+		this.work = new long[2 * SharedTables.ALPHABET_SIZE];
+		this.lengths = new int[SharedTables.ALPHABET_SIZE];
+		this.encodeLengths = new int[2][SharedTables.ALPHABET_SIZE];
+		this.encodeCodes = new CanonicalCode[2];
+		this.encodeTables = new EncodeTable[2];
+		this.decodeLengths = new int[2][SharedTables.ALPHABET_SIZE];
+		this.decodeCodes = new CanonicalCode[2];
+		this.decodeTables = new DecodeTable[2];
+		for (int slot = 0; slot < 2; slot++) {
+			encodeCodes[slot] = new CanonicalCode(SharedTables.ALPHABET_SIZE);
+			encodeTables[slot] = new EncodeTable(encodeCodes[slot], false);
+			decodeCodes[slot] = new CanonicalCode(SharedTables.ALPHABET_SIZE);
+			decodeTables[slot] = new DecodeTable(decodeCodes[slot]);
+		}
+		this.sink = new ByteBufferBitSink(EMPTY);
+		this.scratch = ByteBuffer.allocate(maxCompressedLength(0) + 8);
+		this.source = new ByteBufferBitSource(EMPTY);
+	}
+
+	// largest compressed size of len bytes, shared tables included since a
+	// message falls back to a table of its own when that's smaller
+	public static int maxCompressedLength(int len) {
+		return MAX_HEADER_SIZE + len;
+	}
+
+	// compress the remaining bytes of src to dst from its position with a table of the
+	// message's own, both positions are moved past the bytes used; returns the compressed size
+	// nothing past it is written, dst too small for the message throws BufferOverflowException
+	// and leaves both buffers as they were
+	public int compress(ByteBuffer src, ByteBuffer dst) throws IOException {
+		return compress(src, dst, MessageFormat.INLINE_TABLE);
+	}
+
+	// same as above with shared table tableId, unless a table of the message's own
+	// is smaller or the shared one has no codeword for one of its symbols
+	public int compress(ByteBuffer src, ByteBuffer dst, int tableId) throws IOException {
+		int start = src.position();
+		int end = src.limit();
+		int len = end - start;
+		Arrays.fill(counts, 0);
+		Histogram.count(src, start, end, counts, sub);
+		int[] tableLengths = null;
+		if (tableId != MessageFormat.INLINE_TABLE) {
+			tableLengths = tables.getLengths(tableId);
+			if (tableLengths == null) {
+				throw new IllegalArgumentException("No shared table with id " + tableId);
+			}
+			if (!fits(tableLengths, len)) tableLengths = null;
+		}
+
+		if (scratch.capacity() < maxCompressedLength(len) + 8) {
+			scratch = ByteBuffer.allocate(maxCompressedLength(len) + 8);
+		}
+		scratch.clear();
+		sink.reset(scratch, true);
+		try {
+			int slot = SHARED_SLOT;
+			if (tableLengths == null) {
+				CodeLengths.build(counts, maxCodeLength, lengths, work);
+				tableLengths = lengths;
+				slot = INLINE_SLOT;
+				sink.write(MessageFormat.INLINE_TABLE, 16);
+				CompactLengths.write(sink, tableLengths);
+			} else {
+				sink.write(tableId, 16);
+			}
+			MessageFormat.writeCount(sink, len);
+			if (!Arrays.equals(tableLengths, encodeLengths[slot])) {
+				encodeCodes[slot].reset(tableLengths);
+				System.arraycopy(tableLengths, 0, encodeLengths[slot], 0, tableLengths.length);
+			}
+			encodeTables[slot].encode(src, start, end, sink);
+			sink.padToByte();
+
+			int size = sink.size();
+			if (size > dst.remaining()) {
+				throw new BufferOverflowException();
+			}
+			dst.put(scratch.array(), 0, size);
+			src.position(end);
+			return size;
+		} finally {
+			sink.reset(EMPTY);
+		}
+	}
+
+	// whether a shared table codes every symbol counted, in no more bits than len bytes
+	// take, which no table of the message's own exceeds
+	private boolean fits(int[] tableLengths, int len) {
+		long bits = 0;
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			if (counts[symbol] == 0) continue;
+			if (tableLengths[symbol] == 0) return false;
+			bits += counts[symbol] * tableLengths[symbol];
+		}
+		return bits <= 8L * len;
+	}
+
+	// decompress the message at the position of src to dst from its position, both
+	// positions are moved past the bytes used; returns the decompressed size
+	// dst too small for the message throws BufferOverflowException
+	public int decompress(ByteBuffer src, ByteBuffer dst) throws InsufficientBitsLeftException, IOException {
+		int start = src.position();
+		boolean done = false;
+		source.reset(src);
+		try {
+			int id = source.next(16);
+			int[] tableLengths;
+			int slot = SHARED_SLOT;
+			if (id == MessageFormat.INLINE_TABLE) {
+				CompactLengths.read(source, lengths);
+				tableLengths = lengths;
+				slot = INLINE_SLOT;
+			} else {
+				tableLengths = tables.getLengths(id);
+				if (tableLengths == null) {
+					throw new IOException("Message uses unknown shared table " + id);
+				}
+			}
+			long count = MessageFormat.readCount(source);
+			// every symbol takes at least one bit
+			if (count > source.remaining()) {
+				throw new IOException("Corrupt message, symbol count " + count + " exceeds its size");
+			}
+			if (count > dst.remaining()) {
+				throw new BufferOverflowException();
+			}
+			DecodeTable decodeTable = decodeTables[slot];
+			if (!Arrays.equals(tableLengths, decodeLengths[slot])) {
+				try {
+					decodeCodes[slot].reset(tableLengths);
+				} catch (IllegalArgumentException e) {
+					// no lengths match these, the next message rebuilds the table
+					Arrays.fill(decodeLengths[slot], -1);
+					throw new IOException("Corrupt length table in message", e);
+				}
+				decodeTable.reset();
+				System.arraycopy(tableLengths, 0, decodeLengths[slot], 0, tableLengths.length);
+			}
+			int position = dst.position();
+			try {
+				decodeTable.decode(source, dst, position, position + (int) count);
+			} catch (IOException e) {
+				throw new IOException("Invalid codeword in message", e);
+			}
+			if (source.bitsPastEnd() > 0) {
+				throw new InsufficientBitsLeftException(0);
+			}
+			src.position(start + (int) ((source.consumed() + 7) >>> 3));
+			dst.position(position + (int) count);
+			done = true;
+			return (int) count;
+		} finally {
+			source.reset(EMPTY);
+			if (!done) src.position(start);
+		}
+	}
+
+	// compress len bytes of src starting at off to dst from dstOff; returns the compressed size
+	public int compress(byte[] src, int off, int len, byte[] dst, int dstOff) throws IOException {
+		return compress(src, off, len, dst, dstOff, MessageFormat.INLINE_TABLE);
+	}
+
+	public int compress(byte[] src, int off, int len, byte[] dst, int dstOff, int tableId) throws IOException {
+		compressSrc = wrap(compressSrc, src, off, off + len);
+		compressDst = wrap(compressDst, dst, dstOff, dst.length);
+		return compress(compressSrc, compressDst, tableId);
+	}
+
+	// decompress the message of len bytes of src starting at off to dst from dstOff;
+	// returns the decompressed size
+	public int decompress(byte[] src, int off, int len, byte[] dst, int dstOff)
+			throws InsufficientBitsLeftException, IOException {
+		decompressSrc = wrap(decompressSrc, src, off, off + len);
+		decompressDst = wrap(decompressDst, dst, dstOff, dst.length);
+		return decompress(decompressSrc, decompressDst);
+	}
+
+	// wrapper of array from start to end, the old one if it wraps the same array
+	private static ByteBuffer wrap(ByteBuffer wrapper, byte[] array, int start, int end) {
+		if (wrapper == null || wrapper.array() != array) {
+			wrapper = ByteBuffer.wrap(array);
+		}
+		wrapper.clear();
+		wrapper.position(start);
+		wrapper.limit(end);
+		return wrapper;
+	}
+
+	// forget the caller's arrays before the codec goes back to a pool, the tables
+	// are kept, every message is checked against them anyway
+	public void reset() {
+		compressSrc = null;
+		compressDst = null;
+		decompressSrc = null;
+		decompressDst = null;
+	}
+
+	public SharedTables getTables() {
+		return tables;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	// 8 to 32 bits, 8 is the least that still gives all 256 byte values a codeword
+	public void setMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > CanonicalCode.MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid maximum codeword length " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+}
@@ -0,0 +1,80 @@
+package huffmanCanonical;
+
+/*
+ * running symbol counts of an adaptive stream, encoder and decoder update
+ * their models with the same symbols in the same order, so they rebuild
+ * the same canonical code at the same time and no lengths are ever sent
+ *
+ * every symbol starts with a count of 1 so it always has a codeword; the
+ * code is rebuilt after REBUILD_START symbols, then after twice as many
+ * each time up to REBUILD_MAX; counts are halved once their total passes
+ * AGING_LIMIT, so the code follows the recent input
+ */
+public class AdaptiveModel {
+
+	// bytes 0 to 255, then the two control symbols
+	public static final int END = 256;
+	public static final int FLUSH = 257;
+	public static final int ALPHABET_SIZE = 258;
+
+	public static final int REBUILD_START = 32;
+	public static final int REBUILD_MAX = 1 << 16;
+	public static final long AGING_LIMIT = 1L << 24;
+
+	private long[] counts;
+	private long total;
+	private int maxLength;
+	private CanonicalCode code;
+	// symbols until the next rebuild and the interval after that
+	private int untilRebuild;
+	private int interval;
+
+	public AdaptiveModel() {
+		this(CodeLengths.DEFAULT_MAX_LENGTH);
+	}
+
+	public AdaptiveModel(int maxLength) {
+		this.counts = new long[ALPHABET_SIZE];
+		this.maxLength = maxLength;
+		reset();
+	}
+
+	// back to the state at the start of a stream
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 1;
+		}
+		total = counts.length;
+		interval = REBUILD_START;
+		untilRebuild = interval;
+		code = new CanonicalCode(CodeLengths.build(counts, maxLength));
+	}
+
+	// count symbol, true if the code has been rebuilt and tables made from it are stale
+	public boolean update(int symbol) {
+		counts[symbol]++;
+		total++;
+		if (--untilRebuild > 0) {
+			return false;
+		}
+		if (total > AGING_LIMIT) {
+			total = 0;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = (counts[i] + 1) >>> 1;
+				total += counts[i];
+			}
+		}
+		code = new CanonicalCode(CodeLengths.build(counts, maxLength));
+		interval = Math.min(2 * interval, REBUILD_MAX);
+		untilRebuild = interval;
+		return true;
+	}
+
+	public CanonicalCode getCode() {
+		return code;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+}
@@ -0,0 +1,88 @@
+package huffmanCanonical;
+
+/*
+ * block container format
+ *
+ * file:  MAGIC (4 bytes), block size (4 bytes), blocks, 4 zero bytes, index (files only)
+ * block: uncompressed size (4 bytes), body size (4 bytes), flags (1 byte), body
+ * body:  length table, payload
+ *        the length table is the codeword length of every symbol (256 bytes),
+ *        or with FLAG_COMPACT_LENGTHS a CompactLengths table padded to a byte
+ *        with FLAG_STREAMS the payload is split into STREAMS bitstreams, symbol i
+ *        of the block going to stream i % STREAMS; the sizes of all streams but
+ *        the last (4 bytes each) come first, then the streams one after another
+ *        with FLAG_CONTEXT the length table is a ContextLengths table padded to a
+ *        byte and every symbol is coded with the table of the byte before it in
+ *        the block; it's never combined with FLAG_STREAMS
+ * index: block count (4 bytes), one entry per block, index offset (8 bytes), INDEX_MAGIC (4 bytes)
+ * entry: file offset of the block (8 bytes), payload bits (8 bytes), uncompressed size (4 bytes)
+ *
+ * version 1 blocks have no flags byte and their size field counts the payload only
+ *
+ * every block carries its own canonical length table and its payload is
+ * padded to a whole byte, so blocks can be coded independently; the index
+ * at the end tells where every block starts and where its symbols go
+ * without reading the blocks in front of it; streams can't seek back to
+ * write one, so they end right after the end marker
+ */
+public class BlockFormat {
+
+	// "HCB" followed by the format version
+	public static final int MAGIC = 0x48434202;
+	public static final int MAGIC_V1 = 0x48434201;
+	public static final int ALPHABET_SIZE = 256;
+	// bytes in front of the body of every block
+	public static final int BLOCK_HEADER_SIZE = 4 + 4 + 1;
+
+	// block flags
+	public static final int FLAG_STREAMS = 1;
+	public static final int FLAG_COMPACT_LENGTHS = 2;
+	public static final int FLAG_CONTEXT = 4;
+	public static final int KNOWN_FLAGS = FLAG_STREAMS | FLAG_COMPACT_LENGTHS | FLAG_CONTEXT;
+	public static final int STREAMS = 4;
+
+	// "HCBI", last 4 bytes of a file with an index
+	public static final int INDEX_MAGIC = 0x48434249;
+	public static final int INDEX_ENTRY_SIZE = 8 + 8 + 4;
+	// index offset and INDEX_MAGIC
+	public static final int INDEX_FOOTER_SIZE = 8 + 4;
+
+	public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+	public static final int MIN_BLOCK_SIZE = 1 << 10;
+	public static final int MAX_BLOCK_SIZE = 1 << 26;
+
+	private BlockFormat() {
+	}
+
+	// format version of a file starting with magic, 0 if it isn't a block container
+	public static int version(int magic) {
+		if (magic == MAGIC) return 2;
+		if (magic == MAGIC_V1) return 1;
+		return 0;
+	}
+
+	public static int blockHeaderSize(int version) {
+		return version == 1 ? 4 + 4 : BLOCK_HEADER_SIZE;
+	}
+
+	// body size of a block from the size field of its header
+	public static int bodySize(int version, int sizeField) {
+		return version == 1 ? ALPHABET_SIZE + sizeField : sizeField;
+	}
+
+	// largest body a block of size symbols can have: a context table of CONTEXTS
+	// CompactLengths tables with bitmaps and 5-bit lengths, the jump table of the
+	// streams, MAX_LENGTH bits per symbol and a padded byte per stream
+	public static long maxBodySize(int size) {
+		long compactBits = 3 + 9 + ALPHABET_SIZE + ALPHABET_SIZE * 5;
+		long tableBits = 8 + ContextLengths.CONTEXTS * 8 + ContextLengths.CONTEXTS * compactBits;
+		return (tableBits + 7) / 8 + 4 * (STREAMS - 1) + (long) size * CanonicalCode.MAX_LENGTH / 8 + STREAMS;
+	}
+
+	public static void checkBlockSize(int blockSize) {
+		if (blockSize < MIN_BLOCK_SIZE || blockSize > MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Block size must be between " + MIN_BLOCK_SIZE
+					+ " and " + MAX_BLOCK_SIZE + " bytes, got " + blockSize);
+		}
+	}
+}
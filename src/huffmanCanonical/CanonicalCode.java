@@ -0,0 +1,150 @@
+package huffmanCanonical;
+
+import java.util.Arrays;
+
+public class CanonicalCode {
+
+	// codewords are kept in an int, so they can't be longer than 32 bits
+	public static final int MAX_LENGTH = 32;
+
+	// per symbol: codeword bits (lowest length bits) and codeword length, 0 means unused
+	private int[] code;
+	private int[] length;
+	private int maxLength;
+	// per codeword length: number of codewords, first codeword and
+	// index of its symbol in sortedSymbols
+	private int[] count;
+	private int[] firstCode;
+	private int[] offset;
+	// used symbols in canonical order (ascending length, then ascending symbol),
+	// the first symbolCount entries are valid
+	private int[] sortedSymbols;
+	private int symbolCount;
+	// next index in sortedSymbols per length while filling it
+	private int[] fill;
+
+	// assigns canonical codewords to the given lengths, shorter codewords first,
+	// the same order the canonical tree is filled left to right
+	public CanonicalCode(int[] lengths) {
+		this(lengths.length);
+		reset(lengths);
+	}
+
+	// code without any codewords for an alphabet of alphabetSize symbols, to be reset
+	public CanonicalCode(int alphabetSize) {
+		this.length = new int[alphabetSize];
+		this.code = new int[alphabetSize];
+		this.maxLength = 0;
+		this.count = new int[MAX_LENGTH + 1];
+		this.firstCode = new int[MAX_LENGTH + 1];
+		this.offset = new int[MAX_LENGTH + 1];
+		this.fill = new int[MAX_LENGTH + 1];
+		this.sortedSymbols = new int[alphabetSize];
+		this.symbolCount = 0;
+	}
+
+	// assigns the codewords of new lengths in place, without allocating, so the arrays
+	// returned by the getters change with it; after an exception the code has no codewords
+	public void reset(int[] lengths) {
+		if (lengths.length != length.length) {
+			throw new IllegalArgumentException("Expected " + length.length + " codeword lengths, got " + lengths.length);
+		}
+		maxLength = 0;
+		symbolCount = 0;
+		Arrays.fill(length, 0);
+		Arrays.fill(code, 0);
+		for (int len : lengths) {
+			if (len < 0 || len > MAX_LENGTH) {
+				maxLength = 0;
+				throw new IllegalArgumentException("Invalid codeword length " + len);
+			}
+			maxLength = Math.max(maxLength, len);
+		}
+
+		// counting sort over lengths instead of sorting symbol cells
+		Arrays.fill(count, 0);
+		for (int len : lengths) {
+			count[len]++;
+		}
+		count[0] = 0;
+		int used = 0;
+		long next = 0;
+		for (int len = 1; len <= maxLength; len++) {
+			offset[len] = used;
+			used += count[len];
+			if (len > 1) next = (next + count[len - 1]) << 1;
+			firstCode[len] = (int) next;
+			// a complete code ends exactly at 2^len, more than that can't be decoded
+			if (next + count[len] > (1L << len)) {
+				maxLength = 0;
+				throw new IllegalArgumentException("Codeword lengths are over-subscribed");
+			}
+		}
+
+		System.arraycopy(lengths, 0, length, 0, lengths.length);
+		System.arraycopy(offset, 0, fill, 0, maxLength + 1);
+		this.symbolCount = used;
+		for (int symbol = 0; symbol < lengths.length; symbol++) {
+			int len = lengths[symbol];
+			if (len == 0) continue;
+			int index = fill[len]++;
+			sortedSymbols[index] = symbol;
+			code[symbol] = firstCode[len] + (index - offset[len]);
+		}
+	}
+
+	// number of used symbols, the valid part of getSortedSymbols
+	public int getSymbolCount() {
+		return symbolCount;
+	}
+
+	// returns the symbol if code is a complete codeword of this length, -1 otherwise
+	public int symbolOf(int code, int length) {
+		if (length > maxLength || count[length] == 0) return -1;
+		long index = (code & 0xffffffffL) - (firstCode[length] & 0xffffffffL);
+		if (index < 0 || index >= count[length]) return -1;
+		return sortedSymbols[offset[length] + (int) index];
+	}
+
+	// codeword as a string of '0' and '1'
+	public String codeString(int symbol) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = length[symbol] - 1; i >= 0; i--) {
+			sb.append((code[symbol] >>> i) & 1);
+		}
+		return sb.toString();
+	}
+
+	// getters below
+	public int[] getCode() {
+		return code;
+	}
+
+	public int[] getLength() {
+		return length;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getAlphabetSize() {
+		return length.length;
+	}
+
+	public int[] getCount() {
+		return count;
+	}
+
+	public int[] getFirstCode() {
+		return firstCode;
+	}
+
+	public int[] getOffset() {
+		return offset;
+	}
+
+	public int[] getSortedSymbols() {
+		return sortedSymbols;
+	}
+}
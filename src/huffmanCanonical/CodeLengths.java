@@ -0,0 +1,193 @@
+package huffmanCanonical;
+
+import java.util.Arrays;
+
+public class CodeLengths {
+
+	// cap used by the encoders unless configured otherwise, same as DEFLATE
+	public static final int DEFAULT_MAX_LENGTH = 15;
+
+	private CodeLengths() {
+	}
+
+	// Huffman codeword length of every symbol from its count, symbols with count 0 get length 0
+	// works on primitive arrays only (in-place Moffat-Katajainen), no tree nodes or frequencies
+	public static int[] build(long[] counts) {
+		return build(counts, CanonicalCode.MAX_LENGTH);
+	}
+
+	// same as above, but no codeword gets longer than maxLength
+	// the unconstrained code is used when it already fits, otherwise package-merge
+	// finds the optimal code among those within the limit
+	public static int[] build(long[] counts, int maxLength) {
+		int[] lengths = new int[counts.length];
+		build(counts, maxLength, lengths, new long[2 * counts.length]);
+		return lengths;
+	}
+
+	// same as above into lengths, with work (at least 2 * counts.length) for the sort and
+	// the lengths, so reused arrays make it allocation free unless package-merge is needed
+	public static void build(long[] counts, int maxLength, int[] lengths, long[] work) {
+		if (maxLength < 1 || maxLength > CanonicalCode.MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid maximum codeword length " + maxLength);
+		}
+		if (lengths.length != counts.length || work.length < 2 * counts.length) {
+			throw new IllegalArgumentException("Length and work arrays too small for " + counts.length + " symbols");
+		}
+		Arrays.fill(lengths, 0);
+		int symbolBits = 32 - Integer.numberOfLeadingZeros(Math.max(1, counts.length - 1));
+
+		// pack count and symbol into one long so a primitive sort orders both,
+		// counts too large to share the long with the symbol are scaled down
+		long maxCount = 0;
+		int n = 0;
+		for (long c : counts) {
+			if (c > 0) n++;
+			maxCount = Math.max(maxCount, c);
+		}
+		if (n == 0) return;
+		int scale = 0;
+		while ((maxCount >>> scale) >= (1L << (62 - symbolBits))) scale++;
+
+		// weights and lengths in work[0, n), keys in work[n, 2n)
+		long[] a = work;
+		int k = n;
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			if (counts[symbol] > 0) {
+				long weight = Math.max(1, counts[symbol] >>> scale);
+				work[k++] = (weight << symbolBits) | symbol;
+			}
+		}
+		Arrays.sort(work, n, 2 * n);
+		long mask = (1L << symbolBits) - 1;
+
+		// a single symbol still needs one bit
+		if (n == 1) {
+			lengths[(int) (work[n] & mask)] = 1;
+			return;
+		}
+
+		for (int i = 0; i < n; i++) {
+			a[i] = work[n + i] >>> symbolBits;
+		}
+		computeLengths(a, n);
+		// a is now ascending by weight, holding lengths in descending order
+		if (a[0] > maxLength) {
+			if (n > (1L << maxLength)) {
+				throw new IllegalArgumentException(n + " symbols don't fit in codewords of "
+						+ maxLength + " bits");
+			}
+			long[] weights = new long[n];
+			for (int i = 0; i < n; i++) {
+				weights[i] = work[n + i] >>> symbolBits;
+			}
+			packageMerge(weights, maxLength);
+			System.arraycopy(weights, 0, a, 0, n);
+		}
+		for (int i = 0; i < n; i++) {
+			lengths[(int) (work[n + i] & mask)] = (int) a[i];
+		}
+	}
+
+	// in-place length-limited codeword lengths for weights sorted in ascending order
+	static void packageMerge(long[] a, int maxLength) {
+		int n = a.length;
+		// level j list: the leaves merged with the packages of pairs from level j + 1;
+		// only the weights of the level below and which items are packages are kept
+		boolean[][] isPackage = new boolean[maxLength + 1][];
+		long[] below = a.clone();
+		int belowCount = n;
+		for (int level = maxLength - 1; level >= 1; level--) {
+			int packages = belowCount / 2;
+			long[] merged = new long[n + packages];
+			boolean[] flags = new boolean[n + packages];
+			int leaf = 0;
+			int pack = 0;
+			for (int k = 0; k < merged.length; k++) {
+				long packWeight = pack < packages ? below[2 * pack] + below[2 * pack + 1] : Long.MAX_VALUE;
+				if (leaf < n && a[leaf] <= packWeight) {
+					merged[k] = a[leaf++];
+				} else {
+					merged[k] = packWeight;
+					flags[k] = true;
+					pack++;
+				}
+			}
+			isPackage[level] = flags;
+			below = merged;
+			belowCount = merged.length;
+		}
+		isPackage[maxLength] = new boolean[n];
+
+		// the first 2n - 2 items of level 1 make up the code, every leaf among the
+		// items used on a level adds one bit to that symbol, every package used
+		// takes two items of the level below
+		for (int i = 0; i < n; i++) {
+			a[i] = 0;
+		}
+		int used = 2 * n - 2;
+		for (int level = 1; level <= maxLength && used > 0; level++) {
+			int packagesUsed = 0;
+			for (int k = 0; k < used; k++) {
+				if (isPackage[level][k]) packagesUsed++;
+			}
+			int leavesUsed = used - packagesUsed;
+			// leaves are taken smallest weight first, they get the longest codewords
+			for (int i = 0; i < leavesUsed; i++) {
+				a[i]++;
+			}
+			used = 2 * packagesUsed;
+		}
+	}
+
+	// in-place Huffman codeword lengths for weights sorted in ascending order
+	static void computeLengths(long[] a) {
+		computeLengths(a, a.length);
+	}
+
+	// same as above for the first n weights of a
+	static void computeLengths(long[] a, int n) {
+		// first pass: combine weights, leaving parent pointers behind
+		a[0] += a[1];
+		int root = 0;
+		int leaf = 2;
+		for (int next = 1; next < n - 1; next++) {
+			if (leaf >= n || a[root] < a[leaf]) {
+				a[next] = a[root];
+				a[root++] = next;
+			} else {
+				a[next] = a[leaf++];
+			}
+			if (leaf >= n || (root < next && a[root] < a[leaf])) {
+				a[next] += a[root];
+				a[root++] = next;
+			} else {
+				a[next] += a[leaf++];
+			}
+		}
+		// second pass: parent pointers to internal node depths
+		a[n - 2] = 0;
+		for (int next = n - 3; next >= 0; next--) {
+			a[next] = a[(int) a[next]] + 1;
+		}
+		// third pass: internal node depths to leaf depths
+		int available = 1;
+		int used = 0;
+		int depth = 0;
+		root = n - 2;
+		int next = n - 1;
+		while (available > 0) {
+			while (root >= 0 && a[root] == depth) {
+				used++;
+				root--;
+			}
+			while (available > used) {
+				a[next--] = depth;
+				available--;
+			}
+			available = 2 * used;
+			depth++;
+			used = 0;
+		}
+	}
+}
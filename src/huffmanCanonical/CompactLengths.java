@@ -0,0 +1,110 @@
+package huffmanCanonical;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import io.BitSink;
+import io.BitSource;
+import io.ByteBufferBitSink;
+import io.InsufficientBitsLeftException;
+
+/*
+ * compact encoding of a codeword length table, only used symbols are stored
+ *
+ * table: width (3 bits), number of used symbols n, used symbols, lengths
+ * used:  n symbol numbers in ascending order if that is shorter than a
+ *        bitmap of the whole alphabet, the bitmap (1 = used) otherwise
+ * lengths: length - 1 of every used symbol in width bits, in symbol order
+ *
+ * n takes as many bits as the alphabet size, a symbol number as many as
+ * the largest symbol; for 256 symbols with 60 in use and codewords up to
+ * 15 bits that's 64 bytes instead of 256
+ */
+public class CompactLengths {
+
+	private CompactLengths() {
+	}
+
+	public static void write(BitSink sink, int[] lengths) throws IOException {
+		int used = 0;
+		int maxLength = 0;
+		for (int length : lengths) {
+			if (length > 0) used++;
+			maxLength = Math.max(maxLength, length);
+		}
+		int width = bitsFor(Math.max(0, maxLength - 1));
+		sink.write(width, 3);
+		sink.write(used, bitsFor(lengths.length));
+		if (listsSymbols(used, lengths.length)) {
+			int symbolBits = bitsFor(lengths.length - 1);
+			for (int symbol = 0; symbol < lengths.length; symbol++) {
+				if (lengths[symbol] > 0) sink.write(symbol, symbolBits);
+			}
+		} else {
+			for (int length : lengths) {
+				sink.write(length > 0 ? 1 : 0, 1);
+			}
+		}
+		for (int length : lengths) {
+			if (length > 0) sink.write(length - 1, width);
+		}
+	}
+
+	public static int[] read(BitSource source, int alphabetSize) throws InsufficientBitsLeftException, IOException {
+		int[] lengths = new int[alphabetSize];
+		read(source, lengths);
+		return lengths;
+	}
+
+	// same as above into lengths, one per symbol of the alphabet
+	public static void read(BitSource source, int[] lengths) throws InsufficientBitsLeftException, IOException {
+		int alphabetSize = lengths.length;
+		int width = source.next(3);
+		int used = source.next(bitsFor(alphabetSize));
+		if (width > 5 || used > alphabetSize) {
+			throw new IOException("Corrupt length table");
+		}
+		Arrays.fill(lengths, 0);
+		if (listsSymbols(used, alphabetSize)) {
+			int symbolBits = bitsFor(alphabetSize - 1);
+			int previous = -1;
+			for (int i = 0; i < used; i++) {
+				int symbol = source.next(symbolBits);
+				if (symbol <= previous || symbol >= alphabetSize) {
+					throw new IOException("Corrupt length table");
+				}
+				lengths[symbol] = 1;
+				previous = symbol;
+			}
+		} else {
+			int present = 0;
+			for (int symbol = 0; symbol < alphabetSize; symbol++) {
+				lengths[symbol] = source.next(1);
+				present += lengths[symbol];
+			}
+			if (present != used) {
+				throw new IOException("Corrupt length table");
+			}
+		}
+		for (int symbol = 0; symbol < alphabetSize; symbol++) {
+			if (lengths[symbol] > 0) lengths[symbol] = source.next(width) + 1;
+		}
+	}
+
+	// the table in whole bytes, padded with 0 bits
+	public static byte[] toByteArray(int[] lengths) throws IOException {
+		ByteBufferBitSink sink = new ByteBufferBitSink(64);
+		write(sink, lengths);
+		sink.padToByte();
+		return sink.toByteArray();
+	}
+
+	private static boolean listsSymbols(int used, int alphabetSize) {
+		return (long) used * bitsFor(alphabetSize - 1) < alphabetSize;
+	}
+
+	// bits needed for values from 0 to max
+	private static int bitsFor(int max) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+	}
+}
@@ -0,0 +1,103 @@
+package huffmanCanonical;
+
+import java.io.IOException;
+
+import io.BitSink;
+import io.BitSource;
+import io.ByteBufferBitSink;
+import io.InsufficientBitsLeftException;
+
+/*
+ * codeword lengths of an order-1 context model: every symbol is coded with
+ * the table of the group its previous byte belongs to, so contexts with
+ * similar statistics (or too few symbols for a table of their own) share
+ * one table
+ *
+ * table:  number of groups - 1 (8 bits), group of every context in as many
+ *         bits as the largest group number takes (only with 2 groups or
+ *         more), a CompactLengths table per group
+ */
+public class ContextLengths {
+
+	// one context per value of the previous byte
+	public static final int CONTEXTS = 256;
+	// context of the first symbol, which has no previous byte
+	public static final int INITIAL_CONTEXT = 0;
+
+	private int[] groupOf;
+	private int[][] lengths;
+
+	public ContextLengths(int[] groupOf, int[][] lengths) {
+		if (groupOf.length != CONTEXTS || lengths.length < 1 || lengths.length > CONTEXTS) {
+			throw new IllegalArgumentException("Need a group for all " + CONTEXTS + " contexts and 1 to "
+					+ CONTEXTS + " tables");
+		}
+		for (int group : groupOf) {
+			if (group < 0 || group >= lengths.length) {
+				throw new IllegalArgumentException("No table for group " + group);
+			}
+		}
+		this.groupOf = groupOf;
+		this.lengths = lengths;
+	}
+
+	public void write(BitSink sink) throws IOException {
+		sink.write(lengths.length - 1, 8);
+		if (lengths.length > 1) {
+			int groupBits = bitsFor(lengths.length - 1);
+			for (int group : groupOf) {
+				sink.write(group, groupBits);
+			}
+		}
+		for (int[] table : lengths) {
+			CompactLengths.write(sink, table);
+		}
+	}
+
+	public static ContextLengths read(BitSource source, int alphabetSize)
+			throws InsufficientBitsLeftException, IOException {
+		int groups = source.next(8) + 1;
+		int[] groupOf = new int[CONTEXTS];
+		if (groups > 1) {
+			int groupBits = bitsFor(groups - 1);
+			for (int context = 0; context < CONTEXTS; context++) {
+				groupOf[context] = source.next(groupBits);
+				if (groupOf[context] >= groups) {
+					throw new IOException("Corrupt context table");
+				}
+			}
+		}
+		int[][] lengths = new int[groups][];
+		for (int group = 0; group < groups; group++) {
+			lengths[group] = CompactLengths.read(source, alphabetSize);
+		}
+		return new ContextLengths(groupOf, lengths);
+	}
+
+	// the table in whole bytes, padded with 0 bits
+	public byte[] toByteArray() throws IOException {
+		ByteBufferBitSink sink = new ByteBufferBitSink(64 * lengths.length);
+		write(sink);
+		sink.padToByte();
+		return sink.toByteArray();
+	}
+
+	// bits needed for values from 0 to max
+	private static int bitsFor(int max) {
+		return Math.max(1, 32 - Integer.numberOfLeadingZeros(max));
+	}
+
+	// group of the contexts by previous byte
+	public int[] getGroupOf() {
+		return groupOf;
+	}
+
+	// codeword lengths by group
+	public int[][] getLengths() {
+		return lengths;
+	}
+
+	public int getGroupCount() {
+		return lengths.length;
+	}
+}
@@ -0,0 +1,80 @@
+package huffmanCanonical;
+
+import java.io.IOException;
+
+import io.BitSink;
+import io.BitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * single table file format, as written by HuffmanEncoder
+ *
+ * file:  length table, symbol count, codewords, 0 bits up to the next 32-bit boundary
+ * table: codeword length of every symbol (256 x 8 bits), or COMPACT_MARKER
+ *        (8 bits) followed by a CompactLengths table; no codeword is longer
+ *        than 32 bits, so the length of symbol 0 is never the marker
+ * count: unsigned 32 bits, counts of COUNT_ESCAPE and up are written as
+ *        COUNT_ESCAPE followed by the count in 64 bits
+ *
+ * files of fewer than COUNT_ESCAPE (2^32 - 1) symbols are the same as before
+ * the escape was added
+ */
+public class FileFormat {
+
+	public static final int ALPHABET_SIZE = 256;
+	public static final long COUNT_ESCAPE = 0xFFFFFFFFL;
+	public static final int COMPACT_MARKER = 0xFF;
+
+	private FileFormat() {
+	}
+
+	public static void writeLengths(BitSink sink, int[] lengths, boolean compact) throws IOException {
+		if (compact) {
+			sink.write(COMPACT_MARKER, 8);
+			CompactLengths.write(sink, lengths);
+			return;
+		}
+		for (int length : lengths) {
+			sink.write(length, 8);
+		}
+	}
+
+	// either kind of length table, told apart by the first byte
+	public static int[] readLengths(BitSource source) throws InsufficientBitsLeftException, IOException {
+		int first = source.next(8);
+		if (first == COMPACT_MARKER) {
+			return CompactLengths.read(source, ALPHABET_SIZE);
+		}
+		int[] lengths = new int[ALPHABET_SIZE];
+		lengths[0] = first;
+		for (int i = 1; i < lengths.length; i++) {
+			lengths[i] = source.next(8);
+		}
+		return lengths;
+	}
+
+	public static void writeSymbolCount(BitSink sink, long count) throws IOException {
+		if (count < 0) {
+			throw new IllegalArgumentException("Negative symbol count " + count);
+		}
+		if (count < COUNT_ESCAPE) {
+			sink.write((int) count, 32);
+			return;
+		}
+		sink.write((int) COUNT_ESCAPE, 32);
+		sink.write((int) (count >>> 32), 32);
+		sink.write((int) count, 32);
+	}
+
+	public static long readSymbolCount(BitSource source) throws InsufficientBitsLeftException, IOException {
+		long count = source.next(32) & 0xFFFFFFFFL;
+		if (count < COUNT_ESCAPE) {
+			return count;
+		}
+		count = ((long) source.next(32) << 32) | (source.next(32) & 0xFFFFFFFFL);
+		if (count < 0) {
+			throw new IOException("Corrupt symbol count");
+		}
+		return count;
+	}
+}
@@ -0,0 +1,51 @@
+package huffmanCanonical;
+
+import java.io.IOException;
+
+import io.BitSink;
+import io.BitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * small message format, for payloads too short to carry their own table
+ *
+ * message: table id (16 bits), CompactLengths table (INLINE_TABLE only),
+ *          symbol count, codewords, 0 bits up to the next byte
+ * count:   7 bits per byte, lowest bits first, high bit set on all bytes but the last
+ *
+ * every other table id names a table of SharedTables both sides agree on
+ */
+public class MessageFormat {
+
+	public static final int INLINE_TABLE = 0;
+	public static final int MAX_TABLE_ID = 0xffff;
+
+	private MessageFormat() {
+	}
+
+	public static void writeCount(BitSink sink, long count) throws IOException {
+		while (count >= 0x80) {
+			sink.write((int) (count & 0x7f) | 0x80, 8);
+			count >>>= 7;
+		}
+		sink.write((int) count, 8);
+	}
+
+	public static long readCount(BitSource source) throws InsufficientBitsLeftException, IOException {
+		long count = 0;
+		for (int shift = 0; shift < 63; shift += 7) {
+			int b = source.next(8);
+			count |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return count;
+			}
+		}
+		throw new IOException("Corrupt symbol count");
+	}
+
+	public static void checkTableId(int id) {
+		if (id <= INLINE_TABLE || id > MAX_TABLE_ID) {
+			throw new IllegalArgumentException("Table ids must be between 1 and " + MAX_TABLE_ID + ", got " + id);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package huffmanCanonical;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * pre-trained canonical tables known to both sides by a short id, so
+ * small messages can name their table instead of carrying its lengths
+ *
+ * table file: one entry per table, id (2 bytes), name (modified UTF-8),
+ *             codeword length of every symbol (256 bytes)
+ */
+public class SharedTables {
+
+	public static final int ALPHABET_SIZE = 256;
+
+	private Map<Integer, int[]> lengths;
+	private Map<String, Integer> ids;
+
+	public SharedTables() {
+		this.lengths = new ConcurrentHashMap<Integer, int[]>();
+		this.ids = new ConcurrentHashMap<String, Integer>();
+	}
+
+	public void register(int id, String name, int[] lengths) {
+		MessageFormat.checkTableId(id);
+		if (lengths.length != ALPHABET_SIZE) {
+			throw new IllegalArgumentException("Tables need a length for all " + ALPHABET_SIZE + " symbols");
+		}
+		// throws for lengths that are no prefix code
+		new CanonicalCode(lengths);
+		this.lengths.put(id, lengths.clone());
+		this.ids.put(name, id);
+	}
+
+	// codeword lengths of table id, null if there is no such table
+	public int[] getLengths(int id) {
+		return lengths.get(id);
+	}
+
+	// id of the table called name, 0 if there is none
+	public int idOf(String name) {
+		Integer id = ids.get(name);
+		return id == null ? MessageFormat.INLINE_TABLE : id;
+	}
+
+	public void write(OutputStream out) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+			data.writeShort(entry.getValue());
+			data.writeUTF(entry.getKey());
+			for (int length : lengths.get(entry.getValue())) {
+				data.writeByte(length);
+			}
+		}
+		data.flush();
+	}
+
+	// add every table of a table file
+	public void read(InputStream in) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		while (true) {
+			int id;
+			try {
+				id = data.readUnsignedShort();
+			} catch (EOFException e) {
+				return;
+			}
+			String name = data.readUTF();
+			int[] table = new int[ALPHABET_SIZE];
+			for (int i = 0; i < table.length; i++) {
+				table[i] = data.readUnsignedByte();
+			}
+			try {
+				register(id, name, table);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Corrupt table " + name + " in table file", e);
+			}
+		}
+	}
+}
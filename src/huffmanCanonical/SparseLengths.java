@@ -0,0 +1,109 @@
+package huffmanCanonical;
+
+import java.io.IOException;
+
+import io.BitSink;
+import io.BitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * codeword lengths of the used symbols of a large alphabet, which may be
+ * used sparsely, without an entry per symbol of the alphabet
+ *
+ * table:   number of used symbols n (32 bits), width (3 bits), symbols, lengths
+ * symbols: n gaps in ascending symbol order, each the difference to the
+ *          previous used symbol (the first to -1) in Elias gamma code:
+ *          as many 0 bits as the gap has bits after its top one, then the gap,
+ *          so neighbouring symbols take 1 bit each
+ * lengths: length - 1 of every used symbol in width bits, in symbol order
+ */
+public class SparseLengths {
+
+	// symbols are numbered from 0 to alphabet size - 1, gaps stay below 2^31
+	public static final int MAX_ALPHABET_SIZE = Integer.MAX_VALUE;
+	// used symbols are decoded by their index, which has to fit a DecodeTable entry
+	public static final int MAX_USED = 1 << 24;
+
+	// used symbols in ascending order and their codeword lengths
+	private int[] symbols;
+	private int[] lengths;
+
+	public SparseLengths(int[] symbols, int[] lengths) {
+		if (symbols.length != lengths.length || symbols.length > MAX_USED) {
+			throw new IllegalArgumentException("Need one length per used symbol, at most " + MAX_USED);
+		}
+		for (int i = 0; i < symbols.length; i++) {
+			if (symbols[i] < 0 || (i > 0 && symbols[i] <= symbols[i - 1])) {
+				throw new IllegalArgumentException("Used symbols must be ascending and not negative");
+			}
+			if (lengths[i] < 1 || lengths[i] > CanonicalCode.MAX_LENGTH) {
+				throw new IllegalArgumentException("Invalid codeword length " + lengths[i]);
+			}
+		}
+		this.symbols = symbols;
+		this.lengths = lengths;
+	}
+
+	public void write(BitSink sink) throws IOException {
+		int maxLength = 0;
+		for (int length : lengths) {
+			maxLength = Math.max(maxLength, length);
+		}
+		int width = Math.max(1, 32 - Integer.numberOfLeadingZeros(Math.max(0, maxLength - 1)));
+		sink.write(symbols.length, 32);
+		sink.write(width, 3);
+		int previous = -1;
+		for (int symbol : symbols) {
+			int gap = symbol - previous;
+			int bits = 32 - Integer.numberOfLeadingZeros(gap);
+			sink.write(0, bits - 1);
+			sink.write(gap, bits);
+			previous = symbol;
+		}
+		for (int length : lengths) {
+			sink.write(length - 1, width);
+		}
+	}
+
+	public static SparseLengths read(BitSource source, int alphabetSize)
+			throws InsufficientBitsLeftException, IOException {
+		int used = source.next(32);
+		int width = source.next(3);
+		if (used < 0 || used > MAX_USED || used > alphabetSize || width > 5) {
+			throw new IOException("Corrupt sparse length table");
+		}
+		int[] symbols = new int[used];
+		long previous = -1;
+		for (int i = 0; i < used; i++) {
+			int zeros = 0;
+			while (source.next(1) == 0) {
+				if (++zeros > 30) {
+					throw new IOException("Corrupt sparse length table");
+				}
+			}
+			long gap = ((long) 1 << zeros) | source.next(zeros);
+			previous += gap;
+			if (previous >= alphabetSize) {
+				throw new IOException("Corrupt sparse length table, symbol " + previous + " out of range");
+			}
+			symbols[i] = (int) previous;
+		}
+		int[] lengths = new int[used];
+		for (int i = 0; i < used; i++) {
+			lengths[i] = source.next(width) + 1;
+		}
+		return new SparseLengths(symbols, lengths);
+	}
+
+	public int[] getSymbols() {
+		return symbols;
+	}
+
+	public int[] getLengths() {
+		return lengths;
+	}
+
+	public int getUsed() {
+		return symbols.length;
+	}
+}
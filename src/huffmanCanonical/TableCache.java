@@ -0,0 +1,95 @@
+package huffmanCanonical;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * bounded LRU cache of tables built from codeword lengths, keyed by the
+ * lengths themselves (hash and equality of the array contents), so every
+ * message coded with a table seen before skips building it
+ */
+public abstract class TableCache<T> {
+
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private Map<Key, T> tables;
+	private long hits;
+	private long misses;
+
+	public TableCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public TableCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Invalid cache capacity " + capacity);
+		}
+		this.tables = new LruMap<T>(capacity);
+	}
+
+	// build the table for a canonical code, called on a miss
+	protected abstract T build(CanonicalCode code);
+
+	public synchronized T get(int[] lengths) {
+		Key key = new Key(lengths);
+		T table = tables.get(key);
+		if (table == null) {
+			misses++;
+			table = build(new CanonicalCode(lengths));
+			tables.put(new Key(lengths.clone()), table);
+		} else {
+			hits++;
+		}
+		return table;
+	}
+
+	public synchronized int size() {
+		return tables.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	// access ordered map that drops its least recently used entry beyond capacity
+	private static class LruMap<T> extends LinkedHashMap<Key, T> {
+		private static final long serialVersionUID = 1L;
+
+		private int capacity;
+
+		LruMap(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, T> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	private static class Key {
+		private int[] lengths;
+		private int hash;
+
+		Key(int[] lengths) {
+			this.lengths = lengths;
+			this.hash = Arrays.hashCode(lengths);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Key && hash == ((Key) other).hash && Arrays.equals(lengths, ((Key) other).lengths);
+		}
+	}
+}
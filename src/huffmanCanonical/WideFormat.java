@@ -0,0 +1,34 @@
+package huffmanCanonical;
+
+/*
+ * file format for symbols wider than a byte, e.g. 16-bit tokens or word ids
+ *
+ * file:  MAGIC (32 bits), alphabet size (32 bits), symbol count (64 bits),
+ *        SparseLengths table, codewords, 0 bits up to the next byte
+ *
+ * the canonical code is assigned over the indices of the used symbols in
+ * ascending symbol order, so tables only grow with the symbols in use
+ */
+public class WideFormat {
+
+	// "HCW" followed by the format version
+	public static final int MAGIC = 0x48435701;
+	// alphabet of 16-bit tokens
+	public static final int TOKEN_ALPHABET_SIZE = 1 << 16;
+
+	private WideFormat() {
+	}
+
+	public static void checkAlphabetSize(int alphabetSize) {
+		if (alphabetSize < 1 || alphabetSize > SparseLengths.MAX_ALPHABET_SIZE) {
+			throw new IllegalArgumentException("Invalid alphabet size " + alphabetSize);
+		}
+	}
+
+	// codeword length cap for used symbols: the usual cap, raised until they all fit
+	// with a few bits to spare for skewed counts
+	public static int maxCodeLength(int used) {
+		int bits = 32 - Integer.numberOfLeadingZeros(Math.max(0, used - 1));
+		return Math.min(CanonicalCode.MAX_LENGTH, Math.max(CodeLengths.DEFAULT_MAX_LENGTH, bits + 4));
+	}
+}
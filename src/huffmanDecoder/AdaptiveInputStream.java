@@ -0,0 +1,111 @@
+package huffmanDecoder;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import huffmanCanonical.AdaptiveModel;
+import io.InsufficientBitsLeftException;
+import io.StreamBitSource;
+
+/*
+ * reads the output of AdaptiveOutputStream, updating its model with
+ * every symbol decoded; bytes are only read as far as decoding needs,
+ * so everything before a flush is returned without waiting for more
+ */
+public class AdaptiveInputStream extends FilterInputStream {
+
+	private AdaptiveModel model;
+	private StreamBitSource source;
+	private DecodeTable table;
+	private boolean finished;
+
+	public AdaptiveInputStream(InputStream in) {
+		super(in);
+		this.model = new AdaptiveModel();
+		this.source = new StreamBitSource(new BufferedInputStream(in));
+		this.table = new DecodeTable(model.getCode());
+		this.finished = false;
+	}
+
+	// the next byte, -1 at the END symbol, -2 after a FLUSH symbol
+	private int readSymbol() throws IOException {
+		if (finished) return -1;
+		int symbol = table.decode(source);
+		if (symbol < 0) {
+			throw new IOException("Invalid codeword in adaptive stream");
+		}
+		if (source.bitsPastEnd() > 0) {
+			throw new IOException("Adaptive stream ends without an end marker",
+					new InsufficientBitsLeftException(0));
+		}
+		if (model.update(symbol)) {
+			table = new DecodeTable(model.getCode());
+		}
+		if (symbol < AdaptiveModel.END) {
+			return symbol;
+		}
+		if (symbol == AdaptiveModel.END) {
+			finished = true;
+			return -1;
+		}
+		// FLUSH: padding to the next byte and the two zero bytes after it
+		source.skip((int) (-source.consumed() & 7) + 16);
+		return -2;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int symbol = readSymbol();
+		while (symbol == -2) {
+			symbol = readSymbol();
+		}
+		return symbol;
+	}
+
+	// returns early after a flush, so it doesn't block on input that may not come yet
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		int n = 0;
+		while (n < len) {
+			int symbol = readSymbol();
+			if (symbol == -1) break;
+			if (symbol == -2) {
+				if (n > 0) break;
+				continue;
+			}
+			b[off + n++] = (byte) symbol;
+		}
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n && read() >= 0) {
+			skipped++;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return 0;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
@@ -0,0 +1,347 @@
+package huffmanDecoder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import huffmanCanonical.BlockFormat;
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CompactLengths;
+import huffmanCanonical.ContextLengths;
+import io.ByteBufferBitSource;
+import io.InsufficientBitsLeftException;
+import io.MappedSegments;
+
+public class BlockDecoder {
+
+	private ForkJoinPool pool;
+
+	public BlockDecoder() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public BlockDecoder(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	// decode the body of one block, from its position to its limit, with the given flags
+	// the size symbols are stored in dst starting at off, returns the payload bits used
+	public static long decodeBlock(ByteBuffer body, int flags, int size, ByteBuffer dst, int off)
+			throws InsufficientBitsLeftException, IOException {
+		if ((flags & ~BlockFormat.KNOWN_FLAGS) != 0) {
+			throw new IOException("Unknown block flags " + flags);
+		}
+		if ((flags & BlockFormat.FLAG_CONTEXT) != 0) {
+			return decodeContext(body, flags, size, dst, off);
+		}
+		int[] lengths = readLengths(body, flags);
+		DecodeTable table;
+		try {
+			table = new DecodeTable(new CanonicalCode(lengths));
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt length table in block", e);
+		}
+		if ((flags & BlockFormat.FLAG_STREAMS) != 0) {
+			return decodeStreams(body, table, size, dst, off);
+		}
+		ByteBufferBitSource source = new ByteBufferBitSource(body);
+		try {
+			table.decode(source, dst, off, off + size);
+		} catch (IOException e) {
+			throw new IOException("Invalid codeword in block", e);
+		}
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		return source.consumed();
+	}
+
+	// the length table at the position of body, body is left at the payload
+	private static int[] readLengths(ByteBuffer body, int flags) throws InsufficientBitsLeftException, IOException {
+		if ((flags & BlockFormat.FLAG_COMPACT_LENGTHS) != 0) {
+			ByteBufferBitSource source = new ByteBufferBitSource(body.duplicate());
+			int[] lengths = CompactLengths.read(source, BlockFormat.ALPHABET_SIZE);
+			if (source.bitsPastEnd() > 0) {
+				throw new InsufficientBitsLeftException(0);
+			}
+			body.position(body.position() + (int) ((source.consumed() + 7) >>> 3));
+			return lengths;
+		}
+		if (body.remaining() < BlockFormat.ALPHABET_SIZE) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		int[] lengths = new int[BlockFormat.ALPHABET_SIZE];
+		for (int i = 0; i < lengths.length; i++) {
+			lengths[i] = body.get() & 0xff;
+		}
+		return lengths;
+	}
+
+	// every symbol with the table of the group of the symbol before it
+	private static long decodeContext(ByteBuffer body, int flags, int size, ByteBuffer dst, int off)
+			throws InsufficientBitsLeftException, IOException {
+		if ((flags & BlockFormat.FLAG_STREAMS) != 0) {
+			throw new IOException("Context blocks can't be split into streams");
+		}
+		ByteBufferBitSource tableSource = new ByteBufferBitSource(body.duplicate());
+		ContextLengths lengths = ContextLengths.read(tableSource, BlockFormat.ALPHABET_SIZE);
+		if (tableSource.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		body.position(body.position() + (int) ((tableSource.consumed() + 7) >>> 3));
+
+		// the context changes with every symbol, so multi-symbol lookups don't apply
+		DecodeTable[] groups = new DecodeTable[lengths.getGroupCount()];
+		try {
+			for (int group = 0; group < groups.length; group++) {
+				groups[group] = new DecodeTable(new CanonicalCode(lengths.getLengths()[group]), false);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt length table in block", e);
+		}
+		DecodeTable[] byContext = new DecodeTable[ContextLengths.CONTEXTS];
+		for (int context = 0; context < byContext.length; context++) {
+			byContext[context] = groups[lengths.getGroupOf()[context]];
+		}
+
+		ByteBufferBitSource source = new ByteBufferBitSource(body);
+		DecodeTable table = byContext[ContextLengths.INITIAL_CONTEXT];
+		for (int i = off, end = off + size; i < end; i++) {
+			int symbol = table.decode(source);
+			if (symbol < 0) {
+				throw new IOException("Invalid codeword in block");
+			}
+			dst.put(i, (byte) symbol);
+			table = byContext[symbol];
+		}
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		return source.consumed();
+	}
+
+	// the streams are independent, so the four lookups of a round don't wait on each other
+	private static long decodeStreams(ByteBuffer body, DecodeTable table, int size, ByteBuffer dst, int off)
+			throws InsufficientBitsLeftException, IOException {
+		ByteBufferBitSource[] sources = new ByteBufferBitSource[BlockFormat.STREAMS];
+		int start = body.position() + 4 * (sources.length - 1);
+		for (int k = 0; k < sources.length; k++) {
+			int streamSize = k < sources.length - 1 ? body.getInt() : body.limit() - start;
+			if (streamSize < 0 || streamSize > body.limit() - start) {
+				throw new IOException("Corrupt stream sizes in block");
+			}
+			ByteBuffer stream = body.duplicate();
+			stream.position(start);
+			stream.limit(start + streamSize);
+			sources[k] = new ByteBufferBitSource(stream);
+			start += streamSize;
+		}
+
+		ByteBufferBitSource s0 = sources[0], s1 = sources[1], s2 = sources[2], s3 = sources[3];
+		int i = off;
+		int end = off + size;
+		for (; i + 3 < end; i += 4) {
+			int a = table.decode(s0);
+			int b = table.decode(s1);
+			int c = table.decode(s2);
+			int d = table.decode(s3);
+			if ((a | b | c | d) < 0) {
+				throw new IOException("Invalid codeword in block");
+			}
+			dst.put(i, (byte) a);
+			dst.put(i + 1, (byte) b);
+			dst.put(i + 2, (byte) c);
+			dst.put(i + 3, (byte) d);
+		}
+		for (; i < end; i++) {
+			int symbol = table.decode(sources[(i - off) & 3]);
+			if (symbol < 0) {
+				throw new IOException("Invalid codeword in block");
+			}
+			dst.put(i, (byte) symbol);
+		}
+		long bits = 0;
+		for (ByteBufferBitSource source : sources) {
+			if (source.bitsPastEnd() > 0) {
+				throw new InsufficientBitsLeftException(0);
+			}
+			bits += source.consumed();
+		}
+		return bits;
+	}
+
+	// decode a block container file block by block
+	public void decode(String inputFile, String outputFile) throws InsufficientBitsLeftException, IOException {
+		InputStream input = new HuffmanInputStream(new BufferedInputStream(new FileInputStream(inputFile)));
+		OutputStream output = new BufferedOutputStream(new FileOutputStream(outputFile));
+		try {
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = input.read(buffer)) != -1) {
+				output.write(buffer, 0, n);
+			}
+		} finally {
+			input.close();
+			output.close();
+		}
+	}
+
+	/*
+	 * decode a block container file with an index on the pool: every block
+	 * is decoded straight into its region of the mapped output file,
+	 * files without an index are decoded block by block
+	 */
+	public void decodeParallel(String inputFile, String outputFile) throws InsufficientBitsLeftException, IOException {
+		FileInputStream input = new FileInputStream(inputFile);
+		RandomAccessFile output = null;
+		try {
+			FileChannel in = input.getChannel();
+			long fileSize = in.size();
+			final MappedByteBuffer[] source = MappedSegments.map(in, FileChannel.MapMode.READ_ONLY, 0, fileSize);
+			final int version = fileSize < 8 ? 0 : BlockFormat.version(readRegion(source, 0, 4).getInt());
+			if (version == 0) {
+				throw new IOException(inputFile + " is not a block container file");
+			}
+			int blockSize = readRegion(source, 4, 4).getInt();
+			try {
+				BlockFormat.checkBlockSize(blockSize);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Corrupt header in " + inputFile, e);
+			}
+			ByteBuffer footer = fileSize >= 8 + 4 + 4 + BlockFormat.INDEX_FOOTER_SIZE
+					? readRegion(source, fileSize - BlockFormat.INDEX_FOOTER_SIZE, BlockFormat.INDEX_FOOTER_SIZE)
+					: null;
+			if (footer == null || footer.getInt(8) != BlockFormat.INDEX_MAGIC) {
+				input.close();
+				decode(inputFile, outputFile);
+				return;
+			}
+
+			// the index runs from indexOffset to the footer, the blocks from the
+			// header to indexOffset; anything else is a corrupt file
+			final long indexOffset = footer.getLong(0);
+			long indexEnd = fileSize - BlockFormat.INDEX_FOOTER_SIZE;
+			if (indexOffset < 8 || indexOffset > indexEnd - 4) {
+				throw new IOException("Corrupt index offset " + indexOffset + " in " + inputFile);
+			}
+			int blockCount = readRegion(source, indexOffset, 4).getInt();
+			long indexSize = (long) blockCount * BlockFormat.INDEX_ENTRY_SIZE;
+			if (blockCount < 0 || indexSize != indexEnd - indexOffset - 4 || indexSize > Integer.MAX_VALUE) {
+				throw new IOException("Corrupt block count " + blockCount + " in " + inputFile);
+			}
+			ByteBuffer index = readRegion(source, indexOffset + 4, (int) indexSize);
+			final long[] blockOffsets = new long[blockCount];
+			final long[] blockBits = new long[blockCount];
+			final int[] blockSizes = new int[blockCount];
+			final long[] outputOffsets = new long[blockCount];
+			int headerSize = BlockFormat.blockHeaderSize(version);
+			long total = 0;
+			for (int i = 0; i < blockCount; i++) {
+				blockOffsets[i] = index.getLong();
+				blockBits[i] = index.getLong();
+				blockSizes[i] = index.getInt();
+				if (blockOffsets[i] < 8 || blockOffsets[i] > indexOffset - headerSize
+						|| blockBits[i] < 0 || blockSizes[i] < 0 || blockSizes[i] > blockSize) {
+					throw new IOException("Corrupt index entry " + i + " in " + inputFile);
+				}
+				outputOffsets[i] = total;
+				total += blockSizes[i];
+			}
+
+			output = new RandomAccessFile(outputFile, "rw");
+			output.setLength(total);
+			final MappedByteBuffer[] target = MappedSegments.map(output.getChannel(),
+					FileChannel.MapMode.READ_WRITE, 0, total);
+			List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>(blockCount);
+			for (int i = 0; i < blockCount; i++) {
+				final int block = i;
+				tasks.add(pool.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws InsufficientBitsLeftException, IOException {
+						decodeIndexedBlock(source, indexOffset, version, blockOffsets[block], blockBits[block],
+								blockSizes[block], target, outputOffsets[block]);
+						return null;
+					}
+				}));
+			}
+			for (ForkJoinTask<Void> task : tasks) {
+				join(task);
+			}
+		} finally {
+			input.close();
+			if (output != null) output.close();
+		}
+	}
+
+	// decode one block of the index, whose header and body must end before
+	// the index at end
+	private static void decodeIndexedBlock(MappedByteBuffer[] source, long end, int version, long offset, long bits,
+			int size, MappedByteBuffer[] target, long outputOffset) throws InsufficientBitsLeftException, IOException {
+		int headerSize = BlockFormat.blockHeaderSize(version);
+		ByteBuffer header = readRegion(source, offset, headerSize);
+		int bodySize = BlockFormat.bodySize(version, header.getInt(4));
+		if (header.getInt(0) != size || bodySize < 0 || bodySize > end - offset - headerSize
+				|| bodySize > BlockFormat.maxBodySize(size)) {
+			throw new IOException("Block at offset " + offset + " doesn't match the index");
+		}
+		int flags = version == 1 ? 0 : header.get(8);
+		ByteBuffer body = readRegion(source, offset + headerSize, bodySize);
+		// decode in place unless the block's output straddles two segments
+		ByteBuffer dst = MappedSegments.slice(target, outputOffset, size);
+		ByteBuffer tmp = dst == null ? ByteBuffer.allocate(size) : dst;
+		if (decodeBlock(body, flags, size, tmp, 0) != bits) {
+			throw new IOException("Block at offset " + offset + " doesn't match the index");
+		}
+		if (dst == null) {
+			MappedSegments.write(target, outputOffset, tmp.array(), 0, size);
+		}
+	}
+
+	// view of a region of the mapped file, copied if it straddles two segments
+	private static ByteBuffer readRegion(MappedByteBuffer[] segments, long offset, int length) {
+		ByteBuffer region = MappedSegments.slice(segments, offset, length);
+		if (region == null) {
+			byte[] copy = new byte[length];
+			MappedSegments.read(segments, offset, copy, 0, length);
+			region = ByteBuffer.wrap(copy);
+		}
+		return region;
+	}
+
+	private static void join(ForkJoinTask<Void> task) throws InsufficientBitsLeftException, IOException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while decoding", e);
+		} catch (ExecutionException e) {
+			// the pool wraps checked exceptions of a Callable in RuntimeExceptions,
+			// once more when it rethrows them on another thread
+			Throwable cause = e.getCause();
+			while (cause instanceof RuntimeException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof IOException) throw (IOException) cause;
+			if (cause instanceof InsufficientBitsLeftException) throw (InsufficientBitsLeftException) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+}
@@ -0,0 +1,208 @@
+package huffmanDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import huffmanCanonical.CanonicalCode;
+import io.PeekableBitSource;
+
+public class DecodeTable {
+
+	// most bits peeked for one table lookup, 4096 entries still fit in L1
+	// codes limited to this length never take the slow path
+	public static final int MAX_TABLE_BITS = 12;
+	// bits peeked for one multi-symbol lookup, the table is bounded to 4096 entries as well
+	public static final int MULTI_TABLE_BITS = 12;
+	// most symbols one multi-symbol entry decodes
+	public static final int MULTI_SYMBOLS = 3;
+	// the multi-symbol table is built once this many symbols were decoded in bulk,
+	// building it costs about as much as decoding that many one at a time
+	public static final int MULTI_BUILD_SYMBOLS = 1 << 13;
+
+	// number of bits peeked for one table lookup
+	private int tableBits;
+	// entry layout: symbol << 8 | codeword length, 0 means the codeword is longer than tableBits
+	private int[] entries;
+	// canonical first code/offset tables per length for the slow path
+	private CanonicalCode code;
+	// false for codes where a lookup wouldn't decode enough symbols to pay for the table
+	private boolean multiSymbol;
+	// multi-symbol entry layout: up to 3 symbols of 8 bits from bit 8 up, first symbol lowest,
+	// symbol count << 5, total codeword length; count 0 means the first codeword is too long
+	// null until built
+	private volatile int[] multiEntries;
+	// table of an earlier code kept by reset, refilled instead of allocating a new one
+	private int[] spareMultiEntries;
+	// symbols decoded in bulk so far, tables shared between threads may lose counts
+	private long bulkSymbols;
+
+	// builds the multi-symbol table when the codewords are short enough to make it worthwhile
+	public DecodeTable(CanonicalCode code) {
+		this(code, worthMultiSymbol(code));
+	}
+
+	public DecodeTable(CanonicalCode code, boolean multiSymbol) {
+		this.code = code;
+		this.entries = new int[1 << Math.min(code.getMaxLength(), MAX_TABLE_BITS)];
+		build(multiSymbol);
+	}
+
+	// rebuild in place after the code was reset, reusing the arrays where they're large
+	// enough; not while other threads decode with this table
+	public void reset() {
+		reset(worthMultiSymbol(code));
+	}
+
+	public void reset(boolean multiSymbol) {
+		int[] previous = multiEntries;
+		if (previous != null) {
+			spareMultiEntries = previous;
+			multiEntries = null;
+		}
+		int size = 1 << Math.min(code.getMaxLength(), MAX_TABLE_BITS);
+		if (entries.length < size) {
+			entries = new int[size];
+		} else {
+			Arrays.fill(entries, 0, size, 0);
+		}
+		build(multiSymbol);
+	}
+
+	private void build(boolean multiSymbol) {
+		this.tableBits = Math.min(code.getMaxLength(), MAX_TABLE_BITS);
+		int[] codes = code.getCode();
+		int[] lengths = code.getLength();
+		int[] sortedSymbols = code.getSortedSymbols();
+		for (int k = 0; k < code.getSymbolCount(); k++) {
+			int symbol = sortedSymbols[k];
+			int length = lengths[symbol];
+			if (length > tableBits) break;
+			// every index starting with this codeword maps to the symbol
+			int shift = tableBits - length;
+			int entry = (symbol << 8) | length;
+			for (int i = codes[symbol] << shift, end = (codes[symbol] + 1) << shift; i < end; i++) {
+				entries[i] = entry;
+			}
+		}
+		this.multiSymbol = multiSymbol && code.getAlphabetSize() <= 256 && code.getMaxLength() > 0;
+		this.bulkSymbols = 0;
+	}
+
+	// two or more symbols per lookup on average: the mean codeword length,
+	// weighting every codeword by the probability 2^-length its length implies,
+	// is no more than half the bits of a lookup
+	public static boolean worthMultiSymbol(CanonicalCode code) {
+		double meanLength = 0;
+		for (int length : code.getLength()) {
+			if (length > 0) meanLength += length / (double) (1L << length);
+		}
+		return meanLength > 0 && 2 * meanLength <= MULTI_TABLE_BITS;
+	}
+
+	// every index decodes greedily as many whole codewords as fit in its bits
+	private int[] buildMultiEntries() {
+		int[] multiEntries = spareMultiEntries != null ? spareMultiEntries : new int[1 << MULTI_TABLE_BITS];
+		spareMultiEntries = null;
+		int mask = (1 << MULTI_TABLE_BITS) - 1;
+		for (int index = 0; index < multiEntries.length; index++) {
+			int used = 0;
+			int count = 0;
+			int symbols = 0;
+			while (count < MULTI_SYMBOLS) {
+				// the single-symbol entry for the bits after the ones used so far
+				int bits = (index << used) & mask;
+				int entry = entries[bits >>> (MULTI_TABLE_BITS - tableBits)];
+				int length = entry & 0xff;
+				if (entry == 0 || used + length > MULTI_TABLE_BITS) break;
+				symbols |= (entry >>> 8) << (8 * count);
+				used += length;
+				count++;
+			}
+			multiEntries[index] = (symbols << 8) | (count << 5) | used;
+		}
+		return multiEntries;
+	}
+
+	// decode one symbol from source, -1 if the next bits are no codeword of this code
+	public int decode(PeekableBitSource source) throws IOException {
+		int entry = entries[(int) source.peek(tableBits)];
+		if (entry != 0) {
+			source.skip(entry & 0xff);
+			return entry >>> 8;
+		}
+		// codeword longer than tableBits, try the longer lengths one by one
+		for (int length = tableBits + 1; length <= code.getMaxLength(); length++) {
+			int symbol = code.symbolOf((int) source.peek(length), length);
+			if (symbol >= 0) {
+				source.skip(length);
+				return symbol;
+			}
+		}
+		return -1;
+	}
+
+	// decode symbols into dst at the indices from start to end, several per lookup
+	// with the multi-symbol table
+	public void decode(PeekableBitSource source, ByteBuffer dst, int start, int end) throws IOException {
+		int i = start;
+		int[] multiEntries = this.multiEntries;
+		if (multiEntries == null && multiSymbol) {
+			bulkSymbols += end - start;
+			if (bulkSymbols >= MULTI_BUILD_SYMBOLS) {
+				multiEntries = buildMultiEntries();
+				this.multiEntries = multiEntries;
+			}
+		}
+		if (multiEntries != null) {
+			while (i + MULTI_SYMBOLS <= end) {
+				int entry = multiEntries[(int) source.peek(MULTI_TABLE_BITS)];
+				int count = (entry >>> 5) & 3;
+				if (count == 0) {
+					dst.put(i++, (byte) decodeSymbol(source));
+					continue;
+				}
+				source.skip(entry & 0x1f);
+				// all three are stored, the ones past count are overwritten by the next lookups
+				dst.put(i, (byte) (entry >>> 8));
+				dst.put(i + 1, (byte) (entry >>> 16));
+				dst.put(i + 2, (byte) (entry >>> 24));
+				i += count;
+			}
+		}
+		for (; i < end; i++) {
+			dst.put(i, (byte) decodeSymbol(source));
+		}
+	}
+
+	private int decodeSymbol(PeekableBitSource source) throws IOException {
+		int symbol = decode(source);
+		if (symbol < 0) {
+			throw new IOException("Invalid codeword");
+		}
+		return symbol;
+	}
+
+	// whether bulk decoding uses the multi-symbol table, once it's built
+	public boolean hasMultiSymbol() {
+		return multiSymbol;
+	}
+
+	// entry for the next tableBits bits of the stream, see layout above
+	public int lookup(int bits) {
+		return entries[bits];
+	}
+
+	// returns the symbol if code is a complete codeword of this length, -1 otherwise
+	public int symbolOf(int code, int length) {
+		return this.code.symbolOf(code, length);
+	}
+
+	public int getTableBits() {
+		return tableBits;
+	}
+
+	public int getMaxLength() {
+		return code.getMaxLength();
+	}
+}
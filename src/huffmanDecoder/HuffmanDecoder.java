@@ -1,6 +1,5 @@
 package huffmanDecoder;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -8,157 +7,174 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.*;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
-import io.BitSink;
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.FileFormat;
 import io.BitSource;
-import io.InputStreamBitSource;
+import io.BufferedStreamBitSource;
+import io.ByteBufferBitSource;
 import io.InsufficientBitsLeftException;
-import io.OutputStreamBitSink;
+import io.MappedSegments;
+import metrics.CodecMetrics;
+import metrics.CodecStats;
+import metrics.Phase;
+import metrics.PhaseTimer;
+import pipeline.ReadAheadInputStream;
+import pipeline.WriteBehindOutputStream;
 
 public class HuffmanDecoder {
 
-	private Cell[] symbols;
-	private Node root;
-	// <huffman code,symbol> pair
-	private Map<String, Integer> map;
+	// decoded bytes are written to the output stream in chunks of this size
+	private static final int DRAIN_SIZE = 1 << 16;
+
+	// codeword length of every symbol, read from the header
+	private int[] lengths;
+	private CanonicalCode code;
 	private InputStream input;
-	private BitSource source;
+	private FileInputStream fileInput;
+	private ByteBufferBitSource source;
 	private OutputStream output;
-	private BitSink sink;
+	private FileOutputStream fileOutput;
 	private String decodingFile;
-	private int symbolNum;
+	private String outputFile;
+	private long symbolNum;
+	private DecodeTable table;
+	// read and write on threads of their own while this one decodes
+	private boolean pipelined;
+	// phase timing of the current decode, a no-op unless someone listens
+	private PhaseTimer timer;
 
 	public HuffmanDecoder(String decodingFile, String outputFile) throws FileNotFoundException {
-		this.symbols = new Cell[256];
-		this.root = new Node(-1);
-		this.map = new HashMap<String, Integer>(); // key: Huffman code; value: symbol value
-//		this.input = new FileInputStream(decodingFile);
-		// use BufferedStream to speed up the whole process
-		this.input = new BufferedInputStream(new FileInputStream(decodingFile));
-		this.source = new InputStreamBitSource(input);
+		this.lengths = new int[256];
+		// the bit source reads the file in chunks, no BufferedStream needed
+		this.fileInput = new FileInputStream(decodingFile);
+		this.input = fileInput;
+		this.source = new BufferedStreamBitSource(input);
 //		this.output = new FileOutputStream(outputFile);
-		this.output = new BufferedOutputStream(new FileOutputStream(outputFile));
-		this.sink = new OutputStreamBitSink(output);
+		this.fileOutput = new FileOutputStream(outputFile);
+		this.output = new BufferedOutputStream(fileOutput);
+		this.decodingFile = decodingFile;
+		this.outputFile = outputFile;
 		this.symbolNum = 0;
+		this.pipelined = false;
+		this.timer = PhaseTimer.DISABLED;
 	}
 
 	// instance methods of decoder
-	public void constructSymbolArray() throws InsufficientBitsLeftException, IOException {
-		for (int i = 0; i < symbols.length; i++) {
-			// first parameter: length, second parameter: symbol
-			int tmp = source.next(8);
-			symbols[i] = new Cell(tmp, i);
-		}
-		
+	public void constructLengthArray() throws InsufficientBitsLeftException, IOException {
+		lengths = FileFormat.readLengths(source);
 	}
 
-	public void sortSymbolArray() {
-		// sort symbols
-		Arrays.sort(symbols, new Comparator<Cell>() {
-			@Override
-			public int compare(Cell c1, Cell c2) {
-				return c1.getLength() - c2.getLength();
-			}
-		});
+	// canonical codewords straight from the lengths, no tree needed
+	public void constructCanonicalCode() {
+		code = new CanonicalCode(lengths);
 	}
 
-	public void constructCanonicalTree() {
-		for (Cell cell : symbols) {
-			insertSymbol(this.root, cell, cell.getLength());
-		}
+	public void constructDecodeTable() {
+		table = new DecodeTable(code);
 	}
 
-	public Node insertSymbol(Node root, Cell cell, int length) {
-		if (length == 0) {
-			Node tmp = new Node(cell.getSymbol());
-			tmp.setLeftFull(true);
-			tmp.setRightFull(true);
-			return tmp;
+	public void outputFile() throws InsufficientBitsLeftException, IOException {
+		// decode a chunk at a time into a buffer and write it out in one call
+		// one table lookup resolves one symbol, or several with the multi-symbol table
+		ByteBuffer chunk = ByteBuffer.allocate(DRAIN_SIZE);
+		for (long left = symbolNum; left > 0; ) {
+			int n = (int) Math.min(chunk.capacity(), left);
+			decodeSymbols(chunk, 0, n);
+			output.write(chunk.array(), 0, n);
+			left -= n;
 		}
-		if (root == null) root = new Node(-1);
-		if (!root.isLeftFull()) {
-			root.setLeft(insertSymbol(root.getLeft(), cell, length - 1));
-			root.setLeftFull(root.getLeft().isLeftFull() && root.getLeft().isRightFull());
-		} else {
-			root.setRight(insertSymbol(root.getRight(), cell, length - 1));
-			root.setRightFull(root.getRight().isLeftFull() && root.getRight().isRightFull());
+		// the source reads 0 bits past its end, so running out of input is checked once here
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
 		}
-		return root;
 	}
-	public void setCodeString(Node root, boolean isLeft, String s) {
-		if (root == null) return;
-
-		if (isLeft) {
-			s = s + "0";
-			root.setCode(s);
 
-		} else {
-			s = s + "1";
-			root.setCode(s);
+	private void decodeSymbols(ByteBuffer dst, int start, int end) throws IOException {
+		try {
+			table.decode(source, dst, start, end);
+		} catch (IOException e) {
+			throw new IOException("Invalid codeword in " + decodingFile, e);
 		}
+	}
+	
+	public void decode() throws InsufficientBitsLeftException, IOException {
+		timer = CodecMetrics.startTimer();
+		long compressedBytes = timer.isEnabled() ? fileInput.getChannel().size() : 0;
+		if (pipelined) {
+			// nothing is read or written yet, so the streams can still be swapped
+			input = new ReadAheadInputStream(fileInput);
+			source = new BufferedStreamBitSource(input);
+			output = new WriteBehindOutputStream(fileOutput);
+		}
+		constructTables();
+		outputFile();
+		input.close();
+		output.close();
+		timer.mark(Phase.BITSTREAM);
+		finishTimer(compressedBytes);
+	}
 
-		setCodeString(root.getLeft(), true, root.getCode());
-
-		setCodeString(root.getRight(), false, root.getCode());
+	// header, canonical code and decode table, timed phase by phase
+	private void constructTables() throws InsufficientBitsLeftException, IOException {
+		constructLengthArray();
+		symbolNum = FileFormat.readSymbolCount(source);
+		timer.mark(Phase.HEADER);
+		constructCanonicalCode();
+		timer.mark(Phase.CANONICAL_CODE);
+		constructDecodeTable();
+		timer.mark(Phase.TABLES);
 	}
 
-	public void constructCodewordSymbolMap(Node root) {
-		if (root == null)
-			return;
-		if (root.getValue() != -1) {
-			// first '0' is not part of codeword string
-			map.put(root.getCode().substring(1), root.getValue());
-			return;
-		}
-		constructCodewordSymbolMap(root.getLeft());
-		constructCodewordSymbolMap(root.getRight());
+	private void finishTimer(long compressedBytes) {
+		timer.finish(CodecStats.DECODE, decodingFile, symbolNum, compressedBytes, code.getMaxLength());
+		timer = PhaseTimer.DISABLED;
 	}
 
-	public void outputFile() throws InsufficientBitsLeftException, IOException {
-		// write out decoded symbols to the decoded file
-		boolean decoded = false;
-		for (int i = 0; i < symbolNum; i++) {
-			StringBuilder sb = new StringBuilder();
-			while (!decoded) {
-				sb.append(source.next(1));
-				if (map.containsKey(sb.toString())) {
-					decoded = true;
-					sink.write(map.get(sb.toString()), 8);
-				}
-			}
-			decoded = false;
+	/*
+	 * mapped mode for large files: the compressed file is read from a mapping
+	 * and the symbols are stored straight into a mapping of the output file,
+	 * whose size is known from the header
+	 */
+	public void decodeMapped() throws InsufficientBitsLeftException, IOException {
+		timer = CodecMetrics.startTimer();
+		FileChannel in = fileInput.getChannel();
+		long compressedBytes = in.size();
+		source = new ByteBufferBitSource(MappedSegments.map(in, FileChannel.MapMode.READ_ONLY, 0, compressedBytes));
+		constructTables();
+
+		// the output stream opened by the constructor is still empty, map the file instead
+		output.close();
+		RandomAccessFile file = new RandomAccessFile(outputFile, "rw");
+		file.setLength(symbolNum);
+		FileChannel out = file.getChannel();
+		for (MappedByteBuffer segment : MappedSegments.map(out, FileChannel.MapMode.READ_WRITE, 0, symbolNum)) {
+			decodeSymbols(segment, 0, segment.limit());
 		}
-	}
-	
-	public void decode() throws InsufficientBitsLeftException, IOException {
-		constructSymbolArray();
-		sortSymbolArray();
-		symbolNum = source.next(32);
-		constructCanonicalTree();
-		setCodeString(root, true, "");
-		constructCodewordSymbolMap(this.root);
-		// symbolNum = source.next(32);
-		outputFile();
+		file.close();
 		input.close();
-		output.close();
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		timer.mark(Phase.BITSTREAM);
+		finishTimer(compressedBytes);
 	}
 	
 	// getters and setters below
-	public Cell[] getSymbols() {
-		return symbols;
+	public int[] getLengths() {
+		return lengths;
 	}
 
 	public int getMaxLength() {
-		return symbols[symbols.length - 1].getLength();
-	}
-
-	public Node getRoot() {
-		return root;
+		return code.getMaxLength();
 	}
 
-	public Map<String, Integer> getMap() {
-		return map;
+	public CanonicalCode getCode() {
+		return code;
 	}
 
 	public InputStream getInput() {
@@ -173,69 +189,29 @@ public class HuffmanDecoder {
 		return output;
 	}
 
-	public BitSink getSink() {
-		return sink;
+	public String getOutputFile() {
+		return outputFile;
 	}
 
 	public String getDecodingFile() {
 		return decodingFile;
 	}
 
-	public int getSymbolNum() {
+	public long getSymbolNum() {
 		return symbolNum;
 	}
-	
-	/*
-	 * below is the old solution which construct the complete tree first
-	 * and prune the tree to get the final canonical tree.
-	 * But this solution could cause GC memory limit exceed problem
-	 * so construct canonical tree directly shown above is used by add 
-	 * another attribute to the Node(leftFull and rightFull)
-	 */
-//	public Node constructTree(Node root, int length, String s) {
-//	Queue<Node> queue = new LinkedList<Node>();		
-//	queue.offer(root);
-//	while (!queue.isEmpty()) {
-//		Node temp = queue.poll();
-//		if (temp.getHeight() + 1 <= length) {
-//			Node left = new Node(-1);
-//			left.setCode(temp.getCode() + "0");
-//			left.setHeight(temp.getHeight() + 1);
-//			Node right = new Node(-1);
-//			right.setCode(temp.getCode() + "1");
-//			right.setHeight(temp.getHeight() + 1);
-//			temp.setLeft(left);
-//			temp.setRight(right);
-//			queue.offer(left);
-//			queue.offer(right);
-//		} 
-//	}
-//	return root;
-//}
-//
-//public void constructCanonicalTree() {
-//	for (Cell cell : symbols) {
-//		insertSymbol(this.root, cell, cell.getLength());
-//	}
-//}
-//
-//public boolean insertSymbol(Node root, Cell cell, int length) {
-//	if (root == null || root.getValue() != -1)
-//		return false;
-//	if (length == 0) {
-//		if (root.getValue() == -1) {
-//			root.setValue(cell.getSymbol());
-//			return true;
-//		} else {
-//			return false;
-//		}
-//	} else {
-//		if (!insertSymbol(root.getLeft(), cell, length - 1)) {
-//			return insertSymbol(root.getRight(), cell, length - 1);
-//		} else {
-//			return true;
-//		}
-//	}
-//}
 
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	// decode() reads ahead and writes behind on threads of their own, so waits for
+	// the disk overlap the decoding; decodeMapped() leaves that to the page cache
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
+	}
+
+	public DecodeTable getTable() {
+		return table;
+	}
 }
@@ -0,0 +1,132 @@
+package huffmanDecoder;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import huffmanCanonical.BlockFormat;
+import io.InsufficientBitsLeftException;
+
+/*
+ * decompresses the block container format one block at a time while it
+ * is read, so only one block is held in memory
+ */
+public class HuffmanInputStream extends FilterInputStream {
+
+	private DataInputStream data;
+	private int version;
+	private ByteBuffer window;
+	private byte[] block;
+	private int position;
+	private int count;
+	private boolean finished;
+
+	public HuffmanInputStream(InputStream in) throws IOException {
+		super(in);
+		this.data = new DataInputStream(in);
+		this.version = BlockFormat.version(data.readInt());
+		if (version == 0) {
+			throw new IOException("Not a block container stream");
+		}
+		int blockSize = data.readInt();
+		try {
+			BlockFormat.checkBlockSize(blockSize);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt stream header", e);
+		}
+		this.window = ByteBuffer.allocate(blockSize);
+		this.block = new byte[0];
+		this.position = 0;
+		this.count = 0;
+		this.finished = false;
+	}
+
+	// decode the next block into the window, false at the end marker
+	private boolean readBlock() throws IOException {
+		if (finished) return false;
+		int size;
+		try {
+			size = data.readInt();
+		} catch (EOFException e) {
+			throw new IOException("Stream ends without an end marker", e);
+		}
+		if (size == 0) {
+			finished = true;
+			return false;
+		}
+		int sizeField = data.readInt();
+		int flags = version == 1 ? 0 : data.readUnsignedByte();
+		int bodySize = BlockFormat.bodySize(version, sizeField);
+		// a corrupt body size mustn't get to allocate the buffer
+		if (size < 0 || size > window.capacity() || sizeField < 0 || bodySize < 0
+				|| bodySize > BlockFormat.maxBodySize(size)) {
+			throw new IOException("Corrupt block header");
+		}
+		if (block.length < bodySize) {
+			block = new byte[bodySize];
+		}
+		data.readFully(block, 0, bodySize);
+		try {
+			BlockDecoder.decodeBlock(ByteBuffer.wrap(block, 0, bodySize), flags, size, window, 0);
+		} catch (InsufficientBitsLeftException e) {
+			throw new IOException("Truncated block", e);
+		}
+		position = 0;
+		count = size;
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (position == count && !readBlock()) {
+			return -1;
+		}
+		return window.get(position++) & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (position == count && !readBlock()) {
+			return -1;
+		}
+		int n = Math.min(len, count - position);
+		System.arraycopy(window.array(), position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = 0;
+		while (skipped < n) {
+			if (position == count && !readBlock()) break;
+			int step = (int) Math.min(n - skipped, count - position);
+			position += step;
+			skipped += step;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return count - position;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark/reset not supported");
+	}
+}
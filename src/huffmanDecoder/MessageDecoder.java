@@ -0,0 +1,83 @@
+package huffmanDecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CompactLengths;
+import huffmanCanonical.MessageFormat;
+import huffmanCanonical.SharedTables;
+import huffmanCanonical.TableCache;
+import io.ByteBufferBitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * decodes the message format, decode tables are looked up in a TableCache
+ * by their lengths, so shared tables and repeated inline ones are built once
+ */
+public class MessageDecoder {
+
+	private SharedTables tables;
+	private TableCache<DecodeTable> cache;
+
+	public MessageDecoder(SharedTables tables) {
+		this(tables, TableCache.DEFAULT_CAPACITY);
+	}
+
+	public MessageDecoder(SharedTables tables, int cacheCapacity) {
+		this.tables = tables;
+		this.cache = new TableCache<DecodeTable>(cacheCapacity) {
+			@Override
+			protected DecodeTable build(CanonicalCode code) {
+				return new DecodeTable(code);
+			}
+		};
+	}
+
+	public byte[] decode(byte[] message, int off, int len) throws InsufficientBitsLeftException, IOException {
+		ByteBufferBitSource source = new ByteBufferBitSource(ByteBuffer.wrap(message, off, len));
+		int id = source.next(16);
+		int[] lengths;
+		if (id == MessageFormat.INLINE_TABLE) {
+			lengths = CompactLengths.read(source, SharedTables.ALPHABET_SIZE);
+		} else {
+			lengths = tables.getLengths(id);
+			if (lengths == null) {
+				throw new IOException("Message uses unknown shared table " + id);
+			}
+		}
+		long count = MessageFormat.readCount(source);
+		// every symbol takes at least one bit
+		if (count > source.remaining()) {
+			throw new IOException("Corrupt message, symbol count " + count + " exceeds its size");
+		}
+		DecodeTable table;
+		try {
+			table = cache.get(lengths);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt length table in message", e);
+		}
+		byte[] decoded = new byte[(int) count];
+		try {
+			table.decode(source, ByteBuffer.wrap(decoded), 0, decoded.length);
+		} catch (IOException e) {
+			throw new IOException("Invalid codeword in message", e);
+		}
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		return decoded;
+	}
+
+	public byte[] decode(byte[] message) throws InsufficientBitsLeftException, IOException {
+		return decode(message, 0, message.length);
+	}
+
+	public TableCache<DecodeTable> getCache() {
+		return cache;
+	}
+
+	public SharedTables getTables() {
+		return tables;
+	}
+}
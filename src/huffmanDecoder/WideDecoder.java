@@ -0,0 +1,68 @@
+package huffmanDecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.SparseLengths;
+import huffmanCanonical.WideFormat;
+import io.BufferedStreamBitSource;
+import io.InsufficientBitsLeftException;
+
+/*
+ * decodes the wide format: the decode table yields the index of a used
+ * symbol, the sparse length table maps it back to the symbol
+ */
+public class WideDecoder {
+
+	// output starts this large and doubles, so a corrupt count can't allocate gigabytes up front
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	private WideDecoder() {
+	}
+
+	public static int[] decode(InputStream in) throws InsufficientBitsLeftException, IOException {
+		BufferedStreamBitSource source = new BufferedStreamBitSource(in);
+		if (source.next(32) != WideFormat.MAGIC) {
+			throw new IOException("Not a wide format file");
+		}
+		int alphabetSize = source.next(32);
+		long count = ((source.next(32) & 0xffffffffL) << 32) | (source.next(32) & 0xffffffffL);
+		if (alphabetSize < 1 || count > Integer.MAX_VALUE - 8) {
+			throw new IOException("Corrupt wide format header");
+		}
+		SparseLengths table = SparseLengths.read(source, alphabetSize);
+		int[] used = table.getSymbols();
+		if (count > 0 && used.length == 0) {
+			throw new IOException("Corrupt wide format header, no symbols in use");
+		}
+		DecodeTable decodeTable;
+		try {
+			decodeTable = new DecodeTable(new CanonicalCode(table.getLengths()), false);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Corrupt sparse length table", e);
+		}
+
+		int[] symbols = new int[(int) Math.min(count, INITIAL_CAPACITY)];
+		for (int i = 0; i < count; i++) {
+			if (i == symbols.length) {
+				// every symbol takes at least a bit, so a count the input can't hold
+				// runs past its end before the array gets much larger than the input
+				if (source.bitsPastEnd() > 0) {
+					throw new InsufficientBitsLeftException(0);
+				}
+				symbols = Arrays.copyOf(symbols, (int) Math.min(count, 2L * symbols.length));
+			}
+			int index = decodeTable.decode(source);
+			if (index < 0) {
+				throw new IOException("Invalid codeword");
+			}
+			symbols[i] = used[index];
+		}
+		if (source.bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		return symbols;
+	}
+}
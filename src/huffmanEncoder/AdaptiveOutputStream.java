@@ -0,0 +1,108 @@
+package huffmanEncoder;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import huffmanCanonical.AdaptiveModel;
+import huffmanCanonical.CanonicalCode;
+import io.ByteBufferBitSink;
+
+/*
+ * one-pass adaptive Huffman coding: every byte is coded as soon as it is
+ * written with the code of an AdaptiveModel, which the decoder rebuilds in
+ * lockstep, so there is no header and no histogram pass
+ *
+ * close writes the END symbol; flush writes the FLUSH symbol, pads to a
+ * byte and adds two zero bytes, so the reader can decode everything
+ * written so far without waiting for more input; a flush with nothing
+ * written since the last one only flushes the underlying stream
+ */
+public class AdaptiveOutputStream extends FilterOutputStream {
+
+	// complete bytes are passed on once this many have collected
+	private static final int DRAIN_SIZE = 1 << 16;
+
+	private AdaptiveModel model;
+	private ByteBufferBitSink sink;
+	private int[] code;
+	private int[] length;
+	// symbols written since the last flush
+	private boolean pending;
+	private boolean closed;
+
+	public AdaptiveOutputStream(OutputStream out) {
+		super(out);
+		this.model = new AdaptiveModel();
+		this.sink = new ByteBufferBitSink(DRAIN_SIZE + 16);
+		this.pending = false;
+		this.closed = false;
+		useCode(model.getCode());
+	}
+
+	private void useCode(CanonicalCode canonical) {
+		this.code = canonical.getCode();
+		this.length = canonical.getLength();
+	}
+
+	private void writeSymbol(int symbol) throws IOException {
+		sink.write(code[symbol], length[symbol]);
+		if (model.update(symbol)) {
+			useCode(model.getCode());
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		pending = true;
+		writeSymbol(b & 0xff);
+		if (sink.size() >= DRAIN_SIZE) sink.writeTo(out);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (len > 0) pending = true;
+		for (int i = off, end = off + len; i < end; i++) {
+			writeSymbol(b[i] & 0xff);
+			if (sink.size() >= DRAIN_SIZE) sink.writeTo(out);
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (!pending) {
+			out.flush();
+			return;
+		}
+		pending = false;
+		writeSymbol(AdaptiveModel.FLUSH);
+		sink.padToByte();
+		// the reader may peek a whole codeword past FLUSH before it knows it's done
+		sink.write(0, 16);
+		sink.writeTo(out);
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			writeSymbol(AdaptiveModel.END);
+			sink.padToByte();
+			sink.writeTo(out);
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package huffmanEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import huffmanCanonical.BlockFormat;
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.CompactLengths;
+import io.ByteBufferBitSink;
+import io.MappedSegments;
+
+public class BlockEncoder {
+
+	private int blockSize;
+	private ForkJoinPool pool;
+	// no codeword gets longer than this
+	private int maxCodeLength;
+	// split every block into several bitstreams for faster decoding
+	private boolean interleaved;
+	// code every symbol with a table chosen by the byte before it, where that pays off
+	private boolean context;
+
+	public BlockEncoder() {
+		this(BlockFormat.DEFAULT_BLOCK_SIZE, ForkJoinPool.commonPool());
+	}
+
+	public BlockEncoder(int blockSize, ForkJoinPool pool) {
+		BlockFormat.checkBlockSize(blockSize);
+		this.blockSize = blockSize;
+		this.pool = pool;
+		this.maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		this.interleaved = false;
+		this.context = false;
+	}
+
+	// code len bytes of src starting at off as one block, header included
+	public static EncodedBlock encodeBlock(byte[] src, int off, int len) throws IOException {
+		return encodeBlock(src, off, len, CodeLengths.DEFAULT_MAX_LENGTH);
+	}
+
+	public static EncodedBlock encodeBlock(byte[] src, int off, int len, int maxCodeLength) throws IOException {
+		return encodeBlock(src, off, len, maxCodeLength, false);
+	}
+
+	// with interleaved set the payload is split into BlockFormat.STREAMS bitstreams
+	public static EncodedBlock encodeBlock(byte[] src, int off, int len, int maxCodeLength, boolean interleaved)
+			throws IOException {
+		return encodeBlock(src, off, len, maxCodeLength, interleaved, false);
+	}
+
+	// with context set the block is coded with an order-1 context model if that makes it
+	// smaller, such blocks aren't split into streams
+	public static EncodedBlock encodeBlock(byte[] src, int off, int len, int maxCodeLength, boolean interleaved,
+			boolean context) throws IOException {
+		if (context) {
+			ContextModel model = ContextModel.build(src, off, len, maxCodeLength);
+			if (model != null) {
+				return encodeContext(src, off, len, model);
+			}
+		}
+		long[] counts = Histogram.count(src, off, len);
+		int[] lengths = CodeLengths.build(counts, maxCodeLength);
+		CanonicalCode code = new CanonicalCode(lengths);
+		if (interleaved) {
+			return encodeStreams(src, off, len, code);
+		}
+		EncodeTable table = new EncodeTable(code, len >= HuffmanEncoder.PAIR_TABLE_THRESHOLD);
+
+		// the payload size is known before encoding, so the block is written in place
+		long bits = 0;
+		for (int i = 0; i < lengths.length; i++) {
+			bits += counts[i] * lengths[i];
+		}
+		byte[] lengthTable = CompactLengths.toByteArray(lengths);
+		int bodySize = lengthTable.length + (int) ((bits + 7) >>> 3);
+		// 8 spare bytes for the 64-bit stores of the sink
+		ByteBuffer block = ByteBuffer.allocate(BlockFormat.BLOCK_HEADER_SIZE + bodySize + 8);
+		putHeader(block, len, bodySize, BlockFormat.FLAG_COMPACT_LENGTHS, lengthTable);
+		ByteBufferBitSink sink = new ByteBufferBitSink(block, true);
+		table.encode(src, off, len, sink);
+		sink.padToByte();
+		block.position(0);
+		block.limit(BlockFormat.BLOCK_HEADER_SIZE + bodySize);
+		return new EncodedBlock(block, len, bits);
+	}
+
+	private static EncodedBlock encodeStreams(byte[] src, int off, int len, CanonicalCode code) throws IOException {
+		EncodeTable table = new EncodeTable(code, false);
+		ByteBufferBitSink[] sinks = new ByteBufferBitSink[BlockFormat.STREAMS];
+		for (int k = 0; k < sinks.length; k++) {
+			sinks[k] = new ByteBufferBitSink(len / sinks.length + 16);
+		}
+		table.encodeStreams(src, off, len, sinks);
+		long bits = 0;
+		byte[] lengthTable = CompactLengths.toByteArray(code.getLength());
+		int bodySize = lengthTable.length + 4 * (sinks.length - 1);
+		for (ByteBufferBitSink sink : sinks) {
+			bits += sink.bitsWritten();
+			sink.padToByte();
+			bodySize += sink.size();
+		}
+
+		ByteBuffer block = ByteBuffer.allocate(BlockFormat.BLOCK_HEADER_SIZE + bodySize);
+		putHeader(block, len, bodySize, BlockFormat.FLAG_STREAMS | BlockFormat.FLAG_COMPACT_LENGTHS, lengthTable);
+		// jump table: where each stream ends
+		for (int k = 0; k < sinks.length - 1; k++) {
+			block.putInt(sinks[k].size());
+		}
+		for (ByteBufferBitSink sink : sinks) {
+			block.put(sink.buffer().array(), 0, sink.size());
+		}
+		block.flip();
+		return new EncodedBlock(block, len, bits);
+	}
+
+	private static EncodedBlock encodeContext(byte[] src, int off, int len, ContextModel model) throws IOException {
+		byte[] lengthTable = model.getLengths().toByteArray();
+		int bodySize = lengthTable.length + (int) ((model.getBits() + 7) >>> 3);
+		ByteBuffer block = ByteBuffer.allocate(BlockFormat.BLOCK_HEADER_SIZE + bodySize + 8);
+		putHeader(block, len, bodySize, BlockFormat.FLAG_CONTEXT, lengthTable);
+		ByteBufferBitSink sink = new ByteBufferBitSink(block, true);
+		model.encode(src, off, len, sink);
+		sink.padToByte();
+		block.position(0);
+		block.limit(BlockFormat.BLOCK_HEADER_SIZE + bodySize);
+		return new EncodedBlock(block, len, model.getBits());
+	}
+
+	private static void putHeader(ByteBuffer block, int len, int bodySize, int flags, byte[] table) {
+		block.putInt(len);
+		block.putInt(bodySize);
+		block.put((byte) flags);
+		block.put(table);
+	}
+
+	// encode the file as independently coded blocks on the pool, written out in order
+	public void encode(String inputFile, String outputFile) throws IOException {
+		FileInputStream input = new FileInputStream(inputFile);
+		FileOutputStream output = new FileOutputStream(outputFile);
+		try {
+			FileChannel in = input.getChannel();
+			FileChannel out = output.getChannel();
+			final long size = in.size();
+			final MappedByteBuffer[] segments = MappedSegments.map(in, FileChannel.MapMode.READ_ONLY, 0, size);
+
+			ByteBuffer header = ByteBuffer.allocate(8);
+			header.putInt(BlockFormat.MAGIC);
+			header.putInt(blockSize);
+			header.flip();
+			write(out, header);
+			// index entries are collected while the blocks are written
+			ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+			DataOutputStream index = new DataOutputStream(indexBytes);
+			int blockCount = 0;
+
+			// a few blocks ahead of the writer keep every worker busy without holding the whole file
+			int window = 2 * pool.getParallelism();
+			Queue<ForkJoinTask<EncodedBlock>> pending = new ArrayDeque<ForkJoinTask<EncodedBlock>>();
+			for (long offset = 0; offset < size; offset += blockSize) {
+				final long start = offset;
+				final int len = (int) Math.min(blockSize, size - offset);
+				final int maxCodeLength = this.maxCodeLength;
+				final boolean interleaved = this.interleaved;
+				final boolean context = this.context;
+				pending.add(pool.submit(new Callable<EncodedBlock>() {
+					@Override
+					public EncodedBlock call() throws IOException {
+						byte[] src = new byte[len];
+						MappedSegments.read(segments, start, src, 0, len);
+						return encodeBlock(src, 0, len, maxCodeLength, interleaved, context);
+					}
+				}));
+				if (pending.size() >= window) {
+					writeBlock(out, index, pending.poll().join());
+					blockCount++;
+				}
+			}
+			while (!pending.isEmpty()) {
+				writeBlock(out, index, pending.poll().join());
+				blockCount++;
+			}
+
+			long indexOffset = out.position() + 4;
+			ByteBuffer end = ByteBuffer.allocate(4 + 4 + indexBytes.size() + BlockFormat.INDEX_FOOTER_SIZE);
+			end.putInt(0);
+			end.putInt(blockCount);
+			end.put(indexBytes.toByteArray());
+			end.putLong(indexOffset);
+			end.putInt(BlockFormat.INDEX_MAGIC);
+			end.flip();
+			write(out, end);
+		} finally {
+			input.close();
+			output.close();
+		}
+	}
+
+	private static void writeBlock(FileChannel out, DataOutputStream index, EncodedBlock block) throws IOException {
+		index.writeLong(out.position());
+		index.writeLong(block.getBits());
+		index.writeInt(block.getSize());
+		write(out, block.getData());
+	}
+
+	private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	// 8 to 32 bits, 8 is the least that still gives all 256 byte values a codeword
+	public void setMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > CanonicalCode.MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid maximum codeword length " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	public boolean isContext() {
+		return context;
+	}
+
+	public void setContext(boolean context) {
+		this.context = context;
+	}
+}
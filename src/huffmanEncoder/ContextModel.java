@@ -0,0 +1,165 @@
+package huffmanEncoder;
+
+import java.io.IOException;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.CompactLengths;
+import huffmanCanonical.ContextLengths;
+import io.ByteBufferBitSink;
+
+/*
+ * order-1 context model of a block: symbols are counted per previous byte,
+ * every context whose own table saves more bits than the table costs gets
+ * one, all other contexts share a table built from their combined counts
+ */
+public class ContextModel {
+
+	// cost of coding a symbol the table has no codeword for
+	private static final long UNCODABLE = Long.MAX_VALUE / 4;
+
+	private ContextLengths lengths;
+	// per context: codewords and codeword lengths of its group's table
+	private int[][] code;
+	private int[][] length;
+	// payload bits of the block the model was built for
+	private long bits;
+
+	private ContextModel(ContextLengths lengths, long bits) {
+		this.lengths = lengths;
+		this.bits = bits;
+		CanonicalCode[] codes = new CanonicalCode[lengths.getGroupCount()];
+		for (int group = 0; group < codes.length; group++) {
+			codes[group] = new CanonicalCode(lengths.getLengths()[group]);
+		}
+		this.code = new int[ContextLengths.CONTEXTS][];
+		this.length = new int[ContextLengths.CONTEXTS][];
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			CanonicalCode group = codes[lengths.getGroupOf()[context]];
+			code[context] = group.getCode();
+			length[context] = group.getLength();
+		}
+	}
+
+	// symbol counts of len bytes of src starting at off by previous byte, the first
+	// symbol counts in ContextLengths.INITIAL_CONTEXT
+	public static long[][] count(byte[] src, int off, int len) {
+		int[] pairs = new int[ContextLengths.CONTEXTS * Histogram.ALPHABET_SIZE];
+		int previous = ContextLengths.INITIAL_CONTEXT;
+		for (int i = off, end = off + len; i < end; i++) {
+			int symbol = src[i] & 0xff;
+			pairs[(previous << 8) | symbol]++;
+			previous = symbol;
+		}
+		long[][] counts = new long[ContextLengths.CONTEXTS][Histogram.ALPHABET_SIZE];
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			for (int symbol = 0; symbol < Histogram.ALPHABET_SIZE; symbol++) {
+				counts[context][symbol] = pairs[(context << 8) | symbol];
+			}
+		}
+		return counts;
+	}
+
+	// the model for len bytes of src starting at off, null if it doesn't code them,
+	// tables included, in fewer bits than a single order-0 table
+	public static ContextModel build(byte[] src, int off, int len, int maxCodeLength) throws IOException {
+		long[][] counts = count(src, off, len);
+		long[] total = new long[Histogram.ALPHABET_SIZE];
+		long[] contextTotal = new long[ContextLengths.CONTEXTS];
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			for (int symbol = 0; symbol < Histogram.ALPHABET_SIZE; symbol++) {
+				total[symbol] += counts[context][symbol];
+				contextTotal[context] += counts[context][symbol];
+			}
+		}
+		int[] order0 = CodeLengths.build(total, maxCodeLength);
+		long order0Bits = cost(total, order0) + tableBits(order0);
+
+		int[][] own = new int[ContextLengths.CONTEXTS][];
+		long[] ownBits = new long[ContextLengths.CONTEXTS];
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			if (contextTotal[context] == 0) continue;
+			own[context] = CodeLengths.build(counts[context], maxCodeLength);
+			ownBits[context] = cost(counts[context], own[context]) + tableBits(own[context]);
+		}
+
+		// decide against the order-0 table first, then once more against the
+		// table of the contexts that share it, the shared table is rebuilt after each pass
+		boolean[] separate = new boolean[ContextLengths.CONTEXTS];
+		int[] shared = order0;
+		long[] rest = null;
+		for (int pass = 0; pass < 2; pass++) {
+			rest = new long[Histogram.ALPHABET_SIZE];
+			for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+				if (contextTotal[context] == 0) continue;
+				separate[context] = ownBits[context] < cost(counts[context], shared);
+				if (!separate[context]) {
+					for (int symbol = 0; symbol < Histogram.ALPHABET_SIZE; symbol++) {
+						rest[symbol] += counts[context][symbol];
+					}
+				}
+			}
+			shared = CodeLengths.build(rest, maxCodeLength);
+		}
+
+		// group 0 is the shared table, unless every context that occurs has its own
+		boolean hasShared = Histogram.total(rest) > 0;
+		int groups = hasShared ? 1 : 0;
+		int[] groupOf = new int[ContextLengths.CONTEXTS];
+		int[][] tables = new int[ContextLengths.CONTEXTS][];
+		if (hasShared) tables[0] = shared;
+		long order1Bits = hasShared ? cost(rest, shared) + tableBits(shared) : 0;
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			if (separate[context]) {
+				groupOf[context] = groups;
+				tables[groups++] = own[context];
+				order1Bits += ownBits[context];
+			}
+		}
+		if (groups < 2) return null;
+		int[][] groupLengths = new int[groups][];
+		System.arraycopy(tables, 0, groupLengths, 0, groups);
+		// contexts that never occur go with the first table, whatever it is
+		order1Bits += 8 + ContextLengths.CONTEXTS * (32 - Integer.numberOfLeadingZeros(groups - 1));
+		if (order1Bits >= order0Bits) return null;
+
+		long bits = hasShared ? cost(rest, shared) : 0;
+		for (int context = 0; context < ContextLengths.CONTEXTS; context++) {
+			if (separate[context]) bits += cost(counts[context], own[context]);
+		}
+		return new ContextModel(new ContextLengths(groupOf, groupLengths), bits);
+	}
+
+	// bits of coding counts with lengths
+	private static long cost(long[] counts, int[] lengths) {
+		long bits = 0;
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			if (counts[symbol] == 0) continue;
+			if (lengths[symbol] == 0) return UNCODABLE;
+			bits += counts[symbol] * lengths[symbol];
+		}
+		return bits;
+	}
+
+	private static long tableBits(int[] lengths) throws IOException {
+		return 8L * CompactLengths.toByteArray(lengths).length;
+	}
+
+	// write the codewords of len bytes of buffer starting at off, each with the table of the byte before it
+	public void encode(byte[] buffer, int off, int len, ByteBufferBitSink sink) throws IOException {
+		int previous = ContextLengths.INITIAL_CONTEXT;
+		for (int i = off, end = off + len; i < end; i++) {
+			int symbol = buffer[i] & 0xff;
+			sink.write(code[previous][symbol], length[previous][symbol]);
+			previous = symbol;
+		}
+	}
+
+	public ContextLengths getLengths() {
+		return lengths;
+	}
+
+	public long getBits() {
+		return bits;
+	}
+}
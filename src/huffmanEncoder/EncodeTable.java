@@ -0,0 +1,116 @@
+package huffmanEncoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import huffmanCanonical.CanonicalCode;
+import io.ByteBufferBitSink;
+
+public class EncodeTable {
+
+	// symbol pairs are only combined when every pair codeword fits in the 32 bits a sink write takes
+	public static final int MAX_PAIR_LENGTH = 16;
+
+	// per symbol codeword and codeword length, the arrays of the canonical code,
+	// so a table without pairs follows resets of its code
+	private int[] code;
+	private int[] length;
+	// per symbol pair (first << 8 | second) combined codeword and length, null if not built
+	private int[] pairCode;
+	private byte[] pairLength;
+
+	public EncodeTable(CanonicalCode code, boolean pairs) {
+		this.code = code.getCode();
+		this.length = code.getLength();
+		if (pairs && code.getMaxLength() <= MAX_PAIR_LENGTH && code.getAlphabetSize() <= 256) {
+			this.pairCode = new int[1 << 16];
+			this.pairLength = new byte[1 << 16];
+			for (int first = 0; first < 256; first++) {
+				if (length[first] == 0) continue;
+				for (int second = 0; second < 256; second++) {
+					if (length[second] == 0) continue;
+					int index = (first << 8) | second;
+					pairCode[index] = (this.code[first] << length[second]) | this.code[second];
+					pairLength[index] = (byte) (length[first] + length[second]);
+				}
+			}
+		}
+	}
+
+	// write the codewords of len bytes of buffer starting at off, a whole codeword per write
+	public void encode(byte[] buffer, int off, int len, ByteBufferBitSink sink) throws IOException {
+		int i = off;
+		int end = off + len;
+		if (pairCode != null) {
+			// two symbols per lookup
+			for (; i + 1 < end; i += 2) {
+				int pair = ((buffer[i] & 0xff) << 8) | (buffer[i + 1] & 0xff);
+				sink.write(pairCode[pair], pairLength[pair]);
+			}
+		}
+		for (; i < end; i++) {
+			int symbol = buffer[i] & 0xff;
+			sink.write(code[symbol], length[symbol]);
+		}
+	}
+
+	// same as above for the bytes from start to end of a heap, direct or mapped buffer
+	public void encode(ByteBuffer buffer, int start, int end, ByteBufferBitSink sink) throws IOException {
+		int i = start;
+		if (pairCode != null) {
+			// two single-byte reads, a getShort would follow the buffer's byte order
+			for (; i + 1 < end; i += 2) {
+				int pair = ((buffer.get(i) & 0xff) << 8) | (buffer.get(i + 1) & 0xff);
+				sink.write(pairCode[pair], pairLength[pair]);
+			}
+		}
+		for (; i < end; i++) {
+			int symbol = buffer.get(i) & 0xff;
+			sink.write(code[symbol], length[symbol]);
+		}
+	}
+
+	// symbol i goes to sinks[i % sinks.length], consecutive writes go to independent sinks
+	public void encodeStreams(byte[] buffer, int off, int len, ByteBufferBitSink[] sinks) throws IOException {
+		int i = off;
+		int end = off + len;
+		if (sinks.length == 4) {
+			ByteBufferBitSink s0 = sinks[0], s1 = sinks[1], s2 = sinks[2], s3 = sinks[3];
+			for (; i + 3 < end; i += 4) {
+				int a = buffer[i] & 0xff;
+				int b = buffer[i + 1] & 0xff;
+				int c = buffer[i + 2] & 0xff;
+				int d = buffer[i + 3] & 0xff;
+				s0.write(code[a], length[a]);
+				s1.write(code[b], length[b]);
+				s2.write(code[c], length[c]);
+				s3.write(code[d], length[d]);
+			}
+		}
+		for (; i < end; i++) {
+			int symbol = buffer[i] & 0xff;
+			sinks[(i - off) % sinks.length].write(code[symbol], length[symbol]);
+		}
+	}
+
+	public boolean hasPairs() {
+		return pairCode != null;
+	}
+
+	// getters below
+	public int[] getCode() {
+		return code;
+	}
+
+	public int[] getLength() {
+		return length;
+	}
+
+	public int[] getPairCode() {
+		return pairCode;
+	}
+
+	public byte[] getPairLength() {
+		return pairLength;
+	}
+}
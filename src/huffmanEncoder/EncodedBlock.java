@@ -0,0 +1,31 @@
+package huffmanEncoder;
+
+import java.nio.ByteBuffer;
+
+public class EncodedBlock {
+
+	// block header and payload between position 0 and the limit
+	private ByteBuffer data;
+	// number of symbols in the block
+	private int size;
+	// payload bits before padding to a whole byte
+	private long bits;
+
+	public EncodedBlock(ByteBuffer data, int size, long bits) {
+		this.data = data;
+		this.size = size;
+		this.bits = bits;
+	}
+
+	public ByteBuffer getData() {
+		return data;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public long getBits() {
+		return bits;
+	}
+}
@@ -0,0 +1,161 @@
+package huffmanEncoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+public class Histogram {
+
+	public static final int ALPHABET_SIZE = 256;
+	// inputs at least this large are counted on several threads, in chunks of this size
+	public static final int PARALLEL_CHUNK_SIZE = 1 << 23;
+
+	private Histogram() {
+	}
+
+	// add the symbol counts of len bytes of src starting at off to counts
+	// four interleaved sub-tables, so consecutive equal bytes don't wait on each other's increments
+	public static void count(byte[] src, int off, int len, long[] counts) {
+		count(src, off, len, counts, new int[4 * ALPHABET_SIZE]);
+	}
+
+	// same as above with the sub-tables passed in, 4 * ALPHABET_SIZE zeros, they're zero again afterwards
+	public static void count(byte[] src, int off, int len, long[] counts, int[] sub) {
+		int i = off;
+		int end = off + len;
+		for (; i + 3 < end; i += 4) {
+			sub[src[i] & 0xff]++;
+			sub[ALPHABET_SIZE | (src[i + 1] & 0xff)]++;
+			sub[(2 * ALPHABET_SIZE) | (src[i + 2] & 0xff)]++;
+			sub[(3 * ALPHABET_SIZE) | (src[i + 3] & 0xff)]++;
+		}
+		for (; i < end; i++) {
+			sub[src[i] & 0xff]++;
+		}
+		merge(sub, counts);
+	}
+
+	// same as above for the bytes from start to end of a heap, direct or mapped buffer
+	public static void count(ByteBuffer src, int start, int end, long[] counts) {
+		count(src, start, end, counts, new int[4 * ALPHABET_SIZE]);
+	}
+
+	public static void count(ByteBuffer src, int start, int end, long[] counts, int[] sub) {
+		int i = start;
+		// one 32-bit load for four symbols
+		for (; i + 3 < end; i += 4) {
+			int word = src.getInt(i);
+			sub[word >>> 24]++;
+			sub[ALPHABET_SIZE | ((word >>> 16) & 0xff)]++;
+			sub[(2 * ALPHABET_SIZE) | ((word >>> 8) & 0xff)]++;
+			sub[(3 * ALPHABET_SIZE) | (word & 0xff)]++;
+		}
+		for (; i < end; i++) {
+			sub[src.get(i) & 0xff]++;
+		}
+		merge(sub, counts);
+	}
+
+	public static long[] count(byte[] src, int off, int len) {
+		long[] counts = new long[ALPHABET_SIZE];
+		count(src, off, len, counts);
+		return counts;
+	}
+
+	// symbol counts of a mapped file, large files are split into chunks
+	// counted on the pool into per-task tables that are summed at the end
+	public static long[] count(final ByteBuffer[] segments, ForkJoinPool pool) {
+		long size = 0;
+		for (ByteBuffer segment : segments) {
+			size += segment.limit();
+		}
+		long[] counts = new long[ALPHABET_SIZE];
+		if (size < 2L * PARALLEL_CHUNK_SIZE || pool.getParallelism() < 2) {
+			for (ByteBuffer segment : segments) {
+				count(segment, 0, segment.limit(), counts);
+			}
+			return counts;
+		}
+
+		List<ForkJoinTask<long[]>> tasks = new ArrayList<ForkJoinTask<long[]>>();
+		for (int s = 0; s < segments.length; s++) {
+			final ByteBuffer segment = segments[s];
+			for (int start = 0; start < segment.limit(); start += PARALLEL_CHUNK_SIZE) {
+				final int from = start;
+				final int to = (int) Math.min(segment.limit(), (long) start + PARALLEL_CHUNK_SIZE);
+				tasks.add(pool.submit(new Callable<long[]>() {
+					@Override
+					public long[] call() {
+						long[] partial = new long[ALPHABET_SIZE];
+						count(segment, from, to, partial);
+						return partial;
+					}
+				}));
+			}
+		}
+		for (ForkJoinTask<long[]> task : tasks) {
+			long[] partial;
+			try {
+				partial = task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("Interrupted while counting", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+			for (int i = 0; i < ALPHABET_SIZE; i++) {
+				counts[i] += partial[i];
+			}
+		}
+		return counts;
+	}
+
+	// add the symbol counts of strided chunks of a mapped input to counts: every segment
+	// is split into evenly spaced chunks of up to chunkSize bytes that cover about ratio
+	// (0 to 1) of it; returns the number of bytes counted
+	public static long sample(ByteBuffer[] segments, double ratio, int chunkSize, long[] counts) {
+		int[] sub = new int[4 * ALPHABET_SIZE];
+		long sampled = 0;
+		for (ByteBuffer segment : segments) {
+			int size = segment.limit();
+			long chunks = (long) Math.ceil(size * ratio / chunkSize);
+			if (chunks * chunkSize >= size) {
+				count(segment, 0, size, counts, sub);
+				sampled += size;
+				continue;
+			}
+			long stride = size / chunks;
+			for (long k = 0; k < chunks; k++) {
+				int start = (int) (k * stride);
+				int end = (int) Math.min(size, (long) start + chunkSize);
+				count(segment, start, end, counts, sub);
+				sampled += end - start;
+			}
+		}
+		return sampled;
+	}
+
+	private static void merge(int[] sub, long[] counts) {
+		for (int i = 0; i < ALPHABET_SIZE; i++) {
+			counts[i] += (long) sub[i] + sub[ALPHABET_SIZE | i]
+					+ sub[(2 * ALPHABET_SIZE) | i] + sub[(3 * ALPHABET_SIZE) | i];
+			sub[i] = 0;
+			sub[ALPHABET_SIZE | i] = 0;
+			sub[(2 * ALPHABET_SIZE) | i] = 0;
+			sub[(3 * ALPHABET_SIZE) | i] = 0;
+		}
+	}
+
+	// total number of symbols counted
+	public static long total(long[] counts) {
+		long total = 0;
+		for (long c : counts) {
+			total += c;
+		}
+		return total;
+	}
+}
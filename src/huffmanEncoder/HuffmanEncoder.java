@@ -8,261 +8,316 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
 
-import huffmanDecoder.Cell;
-import huffmanDecoder.Node;
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.FileFormat;
 import io.BitSink;
-import io.BitSource;
-import io.InputStreamBitSource;
+import io.ByteBufferBitSink;
 import io.InsufficientBitsLeftException;
-import io.OutputStreamBitSink;
+import io.MappedSegments;
+import metrics.CodecMetrics;
+import metrics.CodecStats;
+import metrics.Phase;
+import metrics.PhaseTimer;
+import pipeline.ReadAheadInputStream;
+import pipeline.WriteBehindOutputStream;
 
 public class HuffmanEncoder {
 
+	// inputs at least this long get the symbol pair table, smaller ones don't repay building it
+	public static final int PAIR_TABLE_THRESHOLD = 1 << 18;
+	// input bytes encoded between two drains of the sink
+	private static final int CHUNK_SIZE = 1 << 16;
+	// sample ratio of the fast mode, 1 / 64 of the input in CHUNK_SIZE chunks
+	public static final double FAST_SAMPLE_RATIO = 1.0 / 64;
+	// smaller samples than this give poor tables, below it the sample ratio goes up
+	public static final long MIN_SAMPLE_SIZE = 1 << 20;
+
 	// input and output stream with coding file name
 	private InputStream input;
-	private BitSource source;
+	private FileInputStream fileInput;
 	private OutputStream output;
-	private BitSink sink;
+	private FileOutputStream fileOutput;
+	private ByteBufferBitSink sink;
 	private String encodingFile;
 	
-	// <symbol, frequency of symbol>
-	private Map<Integer, Double> frequencyMap; 
-	// <symbol, codeword(0, 1 string)> for original huffman tree
-	private Map<Integer, String> codeMap; 
-	// symbol array
-	private Cell[] symbols;
-	// symbol heap to sort Node based on frequency and tree height
-	private Queue<Node> symbolHeap;
+	// count of every symbol
+	private long[] counts;
+	// codeword length of every symbol, 0 for symbols not in the input
+	private int[] lengths;
+	private CanonicalCode code;
+	private EncodeTable table;
 	// total number of symbol in the input file
-	private int symbolNum;
-	private Node root;
+	private long symbolNum;
+	// no codeword gets longer than this
+	private int maxCodeLength;
+	// write only the lengths of used symbols, older decoders can't read it
+	private boolean compactHeader;
+	// fraction of the input the counts are estimated from, 1 counts all of it in a pass of its own
+	private double sampleRatio;
+	// fast mode: bytes the counts came from, and the exact counts gathered while encoding,
+	// null after an exact encode
+	private long sampledBytes;
+	private long[] exactCounts;
+	// read and write on threads of their own while this one encodes
+	private boolean pipelined;
+	// phase timing of the current encode, a no-op unless someone listens
+	private PhaseTimer timer;
 
 	public HuffmanEncoder(String encodingFile, String outputFile) throws FileNotFoundException {
 //		this.input = new FileInputStream(encodingFile);
 		// BufferedStream is much faster than FileStream
-		this.input = new BufferedInputStream(new FileInputStream(encodingFile));
-		this.source = new InputStreamBitSource(input);
+		this.fileInput = new FileInputStream(encodingFile);
+		this.input = new BufferedInputStream(fileInput);
 //		this.output = new FileOutputStream(outputFile);
-		this.output = new BufferedOutputStream(new FileOutputStream(outputFile));
-		this.sink = new OutputStreamBitSink(output);
+		this.fileOutput = new FileOutputStream(outputFile);
+		this.output = new BufferedOutputStream(fileOutput);
+		// bits are collected in memory and moved to the output stream in bulk
+		this.sink = new ByteBufferBitSink();
 		this.encodingFile = encodingFile;
 
-		this.frequencyMap = new HashMap<Integer, Double>();
-		this.codeMap = new HashMap<Integer, String>();
-		this.symbols = new Cell[256];
-		this.symbolHeap = new PriorityQueue<Node>(new Comparator<Node>() {
-			@Override
-			public int compare(Node n1, Node n2) {
-				int diff = Double.compare(n1.getFrequency(), n2.getFrequency());
-				if (diff > 0) {
-					return 1;
-				} else if (diff < 0) {
-					return -1;
-				} else {
-					int tmp = Double.compare(n1.getHeight(), n2.getHeight());
-					if (tmp > 0) {
-						return 1;
-					} else if (tmp < 0) {
-						return -1;
-					} else {
-						return 0;
-					}
-				}
-			}
-		});
+		this.counts = new long[256];
+		this.lengths = new int[256];
 		this.symbolNum = 0;
-		this.root = null;
+		this.maxCodeLength = CodeLengths.DEFAULT_MAX_LENGTH;
+		this.compactHeader = false;
+		this.sampleRatio = 1;
+		this.pipelined = false;
+		this.timer = PhaseTimer.DISABLED;
 	}
 
-	// <symbol, frequency>
-	public void constructFrequencyMap() throws InsufficientBitsLeftException, IOException {
-		while (input.available() > 0) {
-			int currentSymbol = source.next(8);
-			symbolNum++;
-			frequencyMap.put(currentSymbol, frequencyMap.getOrDefault(currentSymbol, 0.0) + 1);
-		}
-//		System.out.println(symbolNum);
-		for (int i = 0; i < 256; i++) {
-			if (!frequencyMap.containsKey(i)) {
-				frequencyMap.put(i, 0.0);
-			}
+	// count every symbol, the input is read in chunks until it ends
+	public void constructHistogram() throws IOException {
+		byte[] buffer = new byte[CHUNK_SIZE];
+		long total = 0;
+		int n;
+		while ((n = input.read(buffer)) >= 0) {
+			Histogram.count(buffer, 0, n, counts);
+			total += n;
 		}
+		symbolNum = total;
 	}
-	
-	// frequency heap with nodes
-	public void constructFrequencyHeap() {
-
-		for (Map.Entry<Integer, Double> entry : frequencyMap.entrySet()) {
-			entry.setValue((double) (entry.getValue() / this.symbolNum));
-		}
-//		// calculate the theoretical entropy here
-//		double entropy = 0.0;
-//		for (Map.Entry<Integer, Double> entry : frequencyMap.entrySet()) {
-//			if (entry.getValue() > 0) {
-//				entropy += entry.getValue() * Math.log(1 / entry.getValue());
-//			}
-//		}
-//		System.out.println("theoretical entropy: " + entropy);
-		
-		for (Map.Entry<Integer, Double> entry : frequencyMap.entrySet()) {
-			Node node = new Node(entry.getKey());
-			node.setFrequency(entry.getValue());
-			symbolHeap.add(node);
-		}
 
+	// count every symbol of the mapped input, large inputs on all cores
+	public void constructHistogram(MappedByteBuffer[] segments) throws IOException {
+		counts = Histogram.count(segments, ForkJoinPool.commonPool());
+		symbolNum = Histogram.total(counts);
 	}
 
-	public void constructOriginalTree() {
-
-		while (symbolHeap.size() > 1) {
-			Node root = new Node(-1);
-			Node first = symbolHeap.poll();
-//			System.out.println(first.getFrequency());
-			Node second = symbolHeap.poll();
-//			System.out.println(second.getFrequency());
-			root.setLeft(first);
-			root.setRight(second);
-			root.setFrequency(first.getFrequency() + second.getFrequency());
-			root.setHeight(1 + Math.max(first.getHeight(), second.getHeight()));
-			symbolHeap.offer(root);
+	/*
+	 * fast mode: estimate the counts from strided chunks of the mapped input
+	 * instead of reading all of it before encoding; every byte value gets
+	 * a count of at least 1, so symbols the sample missed still have a
+	 * (long) codeword and the input is encoded in the same single pass
+	 */
+	public void sampleHistogram(MappedByteBuffer[] segments, long size) {
+		double ratio = Math.min(1, Math.max(sampleRatio, (double) MIN_SAMPLE_SIZE / size));
+		counts = new long[Histogram.ALPHABET_SIZE];
+		sampledBytes = Histogram.sample(segments, ratio, CHUNK_SIZE, counts);
+		for (int symbol = 0; symbol < counts.length; symbol++) {
+			if (counts[symbol] == 0) counts[symbol] = 1;
 		}
-		root = symbolHeap.peek();
+		symbolNum = size;
+		exactCounts = new long[Histogram.ALPHABET_SIZE];
 	}
 
-	// set string of sequence of 0 and 1 as codeword to each node
-	// here node means all the nodes in the original tree rather than just leaf nodes
-	public void setCodeString(Node root, boolean isLeft, String s) {
-		if (root == null)
-			return;
-
-		if (isLeft) {
-			s = s + "0";
-			root.setCode(s);
-
-		} else {
-			s = s + "1";
-			root.setCode(s);
-		}
-		// use parents' codeString to set the child nodes
-		setCodeString(root.getLeft(), true, root.getCode());
-		setCodeString(root.getRight(), false, root.getCode());
+	// Huffman codeword lengths straight from the symbol counts, no tree needed
+	public void constructCodeLengths() {
+		lengths = CodeLengths.build(counts, maxCodeLength);
 	}
 
-	public void constructCodewordSymbolMap(Node root) {
-		if (root == null)
-			return;
-		if (root.getValue() != -1) {
-//			System.out.println(root.getValue());
-			codeMap.put(root.getValue(), root.getCode().substring(1));
-		}
-		constructCodewordSymbolMap(root.getLeft());
-		constructCodewordSymbolMap(root.getRight());
+	// assign canonical codewords to the lengths
+	public void constructCanonicalCode() {
+		code = new CanonicalCode(lengths);
 	}
-	
-	// array of cell containing symbol value and the length of symbol codeword
-	public void constructSymbolArray() throws InsufficientBitsLeftException, IOException {
-		for (int i = 0; i < symbols.length; i++) {
-			// first parameter: length, second parameter: symbol
-			symbols[i] = new Cell(codeMap.get(i).length(), i);
-		}
-	}
-	
-	// sort symbols in ascending codeword length order
-	public void sortSymbolArray() {
-		// sort symbols
-		Arrays.sort(symbols, new Comparator<Cell>() {
-			@Override
-			public int compare(Cell c1, Cell c2) {
-				return c1.getLength() - c2.getLength();
-			}
-		});
-	}
-	
-	// construct the canonical tree
-	public void constructCanonicalTree() {
-		// we need to reset the root, otherwise, the tree cannot be formed correctly
-		// there could be duplicate nodes in the tree if don't reset the root.
-		root = new Node(-1);
-		for (Cell cell : symbols) {
-			insertSymbol(this.root, cell, cell.getLength());
-		}
+
+	// primitive codeword tables for the output loop
+	public void constructEncodeTable() {
+		table = new EncodeTable(code, symbolNum >= PAIR_TABLE_THRESHOLD);
 	}
 
-	// insert the specified node to the Huffman canonical tree
-	public Node insertSymbol(Node root, Cell cell, int length) {
-		if (length == 0) {
-			Node tmp = new Node(cell.getSymbol());
-			tmp.setLeftFull(true);
-			tmp.setRightFull(true);
-//			System.out.println(cell.getSymbol());
-			return tmp;
-		}
-		if (root == null)
-			root = new Node(-1);
-		if (!root.isLeftFull()) {
-			root.setLeft(insertSymbol(root.getLeft(), cell, length - 1));
-			// if both left and right sub-tree are full, set the root leftFull as true
-			root.setLeftFull(root.getLeft().isLeftFull() && root.getLeft().isRightFull());
-		} else {
-			root.setRight(insertSymbol(root.getRight(), cell, length - 1));
-			// if both left and right sub-tree are full, set the root rightFull as true
-			root.setRightFull(root.getRight().isLeftFull() && root.getRight().isRightFull());
-		}
-		return root;
+	private void writeHeader() throws IOException {
+		// write the length of symbols
+		FileFormat.writeLengths(sink, lengths, compactHeader);
+		// write total number of symbols, escaped to 64 bits for inputs of
+		// COUNT_ESCAPE (2^32 - 1) bytes, just under 4 GB, and more
+		FileFormat.writeSymbolCount(sink, symbolNum);
 	}
 
 	public void outputFile() throws InsufficientBitsLeftException, IOException {
-		// write the length of symbols
-		for (int i = 0; i < 256; i++) {
-			sink.write(codeMap.get(i).length(), 8);
-		}
-		// write total number of symbols
-		sink.write(symbolNum, 32);
+		writeHeader();
+		timer.mark(Phase.HEADER);
 		/*
 		 * we need to iterate the symbol from the input symbol again
 		 * 1. close the previous inputStream
 		 * 2. open a new inputStream which takes the encodingFile
 		 */
 		
-		input.close();
-		source = new InputStreamBitSource(new BufferedInputStream(new FileInputStream(encodingFile)));
-		// write the encoded codeword of symbol to the outputStream
-		for (int i = 0; i < symbolNum; i++) {
-			int tmp = source.next(8);
-			// System.out.println((char)tmp);
-			if (codeMap.containsKey(tmp)) {
-				sink.write(codeMap.get(tmp));
+		// the fast mode hasn't read the input yet and needs no second open
+		InputStream in = input;
+		if (!isSampled()) {
+			input.close();
+			in = new FileInputStream(encodingFile);
+			if (pipelined) in = new ReadAheadInputStream(in);
+		}
+		// write the encoded codeword of symbol to the outputStream, a whole codeword per write
+		byte[] buffer = new byte[CHUNK_SIZE];
+		int[] sub = new int[4 * Histogram.ALPHABET_SIZE];
+		long left = symbolNum;
+		while (left > 0) {
+			int n = in.read(buffer, 0, (int) Math.min(buffer.length, left));
+			if (n < 0) break;
+			left -= n;
+			table.encode(buffer, 0, n, sink);
+			if (isSampled()) Histogram.count(buffer, 0, n, exactCounts, sub);
+			sink.writeTo(output);
+		}
+		in.close();
+		sink.padToWord();
+		sink.writeTo(output);
+		output.close();
+		timer.mark(Phase.BITSTREAM);
+	}
+
+	/*
+	 * single-open mode for large files: the input is mapped once,
+	 * counted and encoded from the same mapping and the output goes
+	 * straight to the file channel, no second open and no per byte stream calls
+	 */
+	public void encodeMapped() throws IOException {
+		FileChannel in = fileInput.getChannel();
+		long size = in.size();
+		timer = CodecMetrics.startTimer();
+		MappedByteBuffer[] segments = MappedSegments.map(in, FileChannel.MapMode.READ_ONLY, 0, size);
+		if (sampleRatio < 1) {
+			sampleHistogram(segments, size);
+		} else {
+			constructHistogram(segments);
+		}
+		constructTables();
+
+		FileChannel out = fileOutput.getChannel();
+		// direct buffer, so draining to the channel doesn't copy
+		sink = new ByteBufferBitSink(ByteBuffer.allocateDirect(CHUNK_SIZE * 8), true);
+		writeHeader();
+		timer.mark(Phase.HEADER);
+		int[] sub = new int[4 * Histogram.ALPHABET_SIZE];
+		for (MappedByteBuffer segment : segments) {
+			for (int start = 0; start < segment.limit(); start += CHUNK_SIZE) {
+				int end = Math.min(segment.limit(), start + CHUNK_SIZE);
+				table.encode(segment, start, end, sink);
+				// counted while the chunk is still in cache, only for the report
+				if (isSampled()) Histogram.count(segment, start, end, exactCounts, sub);
+				sink.writeTo(out);
 			}
 		}
 		sink.padToWord();
+		sink.writeTo(out);
+		input.close();
 		output.close();
+		timer.mark(Phase.BITSTREAM);
+		finishTimer();
 	}
 
 	public void encode() throws InsufficientBitsLeftException, IOException {
-		//
-		constructFrequencyMap();
-		constructFrequencyHeap();
-		constructOriginalTree();
-		setCodeString(root, true, "");
-		constructCodewordSymbolMap(root);
-		constructSymbolArray();
-		sortSymbolArray();
-		
-		constructCanonicalTree();
-		setCodeString(root, true, "");
-		codeMap.clear();
-		constructCodewordSymbolMap(root);
-//		// calculate entropy based on my compressed solution
-//		double entropy = 0.0;
-//		for (Map.Entry<Integer, Double> entry : frequencyMap.entrySet()) {
-//			if (entry.getValue() > 0) {
-//				entropy += entry.getValue() * this.codeMap.get(entry.getKey()).length();
-//			}
-//		}
-//		System.out.println("mine entropy: " + entropy);
+		timer = CodecMetrics.startTimer();
+		if (pipelined) {
+			// nothing is read or written yet, so the streams can still be swapped
+			input = new ReadAheadInputStream(fileInput);
+			output = new WriteBehindOutputStream(fileOutput);
+		}
+		if (sampleRatio < 1) {
+			// the sample is read through a mapping, the stream is read once while encoding
+			FileChannel in = fileInput.getChannel();
+			long size = in.size();
+			sampleHistogram(MappedSegments.map(in, FileChannel.MapMode.READ_ONLY, 0, size), size);
+		} else {
+			constructHistogram();
+		}
+		constructTables();
 		outputFile();
+		finishTimer();
+	}
+
+	// everything between the histogram and the output, timed phase by phase
+	private void constructTables() {
+		timer.mark(Phase.HISTOGRAM);
+		constructCodeLengths();
+		timer.mark(Phase.CODE_LENGTHS);
+		constructCanonicalCode();
+		timer.mark(Phase.CANONICAL_CODE);
+		constructEncodeTable();
+		timer.mark(Phase.TABLES);
+	}
+
+	private void finishTimer() {
+		timer.finish(CodecStats.ENCODE, encodingFile, symbolNum, sink.bitsWritten() >>> 3, code.getMaxLength());
+		timer = PhaseTimer.DISABLED;
+	}
+
+	private boolean isSampled() {
+		return exactCounts != null;
+	}
+
+	// bits an exact two-pass encode would have written, header and padding included, 0 unless the
+	// last encode was in fast mode
+	public long getExactBits() throws IOException {
+		if (!isSampled()) return 0;
+		int[] exactLengths = CodeLengths.build(exactCounts, maxCodeLength);
+		ByteBufferBitSink header = new ByteBufferBitSink();
+		FileFormat.writeLengths(header, exactLengths, compactHeader);
+		FileFormat.writeSymbolCount(header, symbolNum);
+		long bits = header.bitsWritten();
+		for (int symbol = 0; symbol < exactCounts.length; symbol++) {
+			bits += exactCounts[symbol] * exactLengths[symbol];
+		}
+		// padded like the output, 1 to 32 bits
+		return bits + 32 - (bits & 31);
+	}
+
+	// how much larger the output of the last fast mode encode is than the exact one,
+	// 0.01 for 1 percent
+	public double getRatioLoss() throws IOException {
+		long exact = getExactBits();
+		return exact == 0 ? 0 : (double) sink.bitsWritten() / exact - 1;
+	}
+
+	// fraction of the input the last fast mode encode counted, can be above the sample
+	// ratio for small inputs
+	public double getSampledFraction() {
+		return symbolNum == 0 ? 0 : (double) sampledBytes / symbolNum;
+	}
+
+	public long getSampledBytes() {
+		return sampledBytes;
+	}
+
+	public double getSampleRatio() {
+		return sampleRatio;
+	}
+
+	// fast mode below 1, for example FAST_SAMPLE_RATIO: counts are estimated from about
+	// this fraction of the input and the input is read once; 1 counts all of it first
+	public void setSampleRatio(double sampleRatio) {
+		if (!(sampleRatio > 0 && sampleRatio <= 1)) {
+			throw new IllegalArgumentException("Invalid sample ratio " + sampleRatio);
+		}
+		this.sampleRatio = sampleRatio;
+	}
+
+	public boolean isPipelined() {
+		return pipelined;
+	}
+
+	// encode() reads ahead and writes behind on threads of their own, so waits for
+	// the disk overlap the encoding; encodeMapped() leaves that to the page cache
+	public void setPipelined(boolean pipelined) {
+		this.pipelined = pipelined;
 	}
 
 	// getter and setters
@@ -270,10 +325,6 @@ public class HuffmanEncoder {
 		return input;
 	}
 
-	public BitSource getSource() {
-		return source;
-	}
-
 	public OutputStream getOutput() {
 		return output;
 	}
@@ -286,27 +337,43 @@ public class HuffmanEncoder {
 		return encodingFile;
 	}
 
-	public int getSymbolNum() {
+	public long getSymbolNum() {
 		return symbolNum;
 	}
 
-	public Queue<Node> getSymbolHeap() {
-		return symbolHeap;
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+
+	// 8 to 32 bits, 8 is the least that still gives all 256 byte values a codeword
+	public void setMaxCodeLength(int maxCodeLength) {
+		if (maxCodeLength < 8 || maxCodeLength > CanonicalCode.MAX_LENGTH) {
+			throw new IllegalArgumentException("Invalid maximum codeword length " + maxCodeLength);
+		}
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	public boolean isCompactHeader() {
+		return compactHeader;
+	}
+
+	public void setCompactHeader(boolean compactHeader) {
+		this.compactHeader = compactHeader;
 	}
 
-	public Node getRoot() {
-		return root;
+	public long[] getCounts() {
+		return counts;
 	}
 
-	public Map<Integer, Double> getFrequencyMap() {
-		return frequencyMap;
+	public EncodeTable getTable() {
+		return table;
 	}
 
-	public Map<Integer, String> getCodeMap() {
-		return codeMap;
+	public int[] getLengths() {
+		return lengths;
 	}
 
-	public Cell[] getSymbols() {
-		return symbols;
+	public CanonicalCode getCode() {
+		return code;
 	}
 }
@@ -0,0 +1,123 @@
+package huffmanEncoder;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import huffmanCanonical.BlockFormat;
+import huffmanCanonical.CodeLengths;
+
+/*
+ * compresses everything written to it into the block container format:
+ * input is collected in a window and every full window is coded with its
+ * own canonical table and written as one block, so memory stays bounded
+ * and output starts after the first window instead of at the end of input
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+
+	public static final int DEFAULT_WINDOW_SIZE = 1 << 16;
+
+	private byte[] window;
+	private int count;
+	private boolean closed;
+	// split every block into several bitstreams for faster decoding
+	private boolean interleaved;
+	// code with an order-1 context model where that makes a block smaller
+	private boolean context;
+
+	public HuffmanOutputStream(OutputStream out) throws IOException {
+		this(out, DEFAULT_WINDOW_SIZE);
+	}
+
+	public HuffmanOutputStream(OutputStream out, int windowSize) throws IOException {
+		super(out);
+		BlockFormat.checkBlockSize(windowSize);
+		this.window = new byte[windowSize];
+		this.count = 0;
+		this.closed = false;
+		this.interleaved = false;
+		this.context = false;
+		ByteBuffer header = ByteBuffer.allocate(8);
+		header.putInt(BlockFormat.MAGIC);
+		header.putInt(windowSize);
+		out.write(header.array());
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (count == window.length) {
+			writeBlock();
+		}
+		window[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while (len > 0) {
+			if (count == window.length) {
+				writeBlock();
+			}
+			int n = Math.min(len, window.length - count);
+			System.arraycopy(b, off, window, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	// code the window collected so far as one block
+	private void writeBlock() throws IOException {
+		if (count == 0) return;
+		ByteBuffer block = BlockEncoder.encodeBlock(window, 0, count,
+				CodeLengths.DEFAULT_MAX_LENGTH, interleaved, context).getData();
+		out.write(block.array(), block.arrayOffset(), block.limit());
+		count = 0;
+	}
+
+	// a flush ends the current block early, so everything written so far can be decoded
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		writeBlock();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			writeBlock();
+			// end marker
+			out.write(new byte[4]);
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	public boolean isInterleaved() {
+		return interleaved;
+	}
+
+	public void setInterleaved(boolean interleaved) {
+		this.interleaved = interleaved;
+	}
+
+	public boolean isContext() {
+		return context;
+	}
+
+	public void setContext(boolean context) {
+		this.context = context;
+	}
+}
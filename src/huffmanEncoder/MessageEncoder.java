@@ -0,0 +1,80 @@
+package huffmanEncoder;
+
+import java.io.IOException;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.CompactLengths;
+import huffmanCanonical.MessageFormat;
+import huffmanCanonical.SharedTables;
+import huffmanCanonical.TableCache;
+import io.ByteBufferBitSink;
+
+/*
+ * codes small messages in the message format, either with a shared table
+ * named by its id or with a table of their own; built encode tables are
+ * kept in a TableCache, so a table is only built the first time it's used
+ */
+public class MessageEncoder {
+
+	private SharedTables tables;
+	private TableCache<EncodeTable> cache;
+
+	public MessageEncoder(SharedTables tables) {
+		this(tables, TableCache.DEFAULT_CAPACITY);
+	}
+
+	public MessageEncoder(SharedTables tables, int cacheCapacity) {
+		this.tables = tables;
+		this.cache = new TableCache<EncodeTable>(cacheCapacity) {
+			@Override
+			protected EncodeTable build(CanonicalCode code) {
+				return new EncodeTable(code, false);
+			}
+		};
+	}
+
+	// code with a table of the message's own, its lengths go in front
+	public byte[] encode(byte[] src, int off, int len) throws IOException {
+		int[] lengths = CodeLengths.build(Histogram.count(src, off, len), CodeLengths.DEFAULT_MAX_LENGTH);
+		ByteBufferBitSink sink = new ByteBufferBitSink(2 + lengths.length + 10 + len);
+		sink.write(MessageFormat.INLINE_TABLE, 16);
+		CompactLengths.write(sink, lengths);
+		return finish(sink, cache.get(lengths), src, off, len);
+	}
+
+	// code with shared table tableId, or with an own table if the message has
+	// a symbol the shared one has no codeword for
+	public byte[] encode(byte[] src, int off, int len, int tableId) throws IOException {
+		int[] lengths = tables.getLengths(tableId);
+		if (lengths == null) {
+			throw new IllegalArgumentException("No shared table with id " + tableId);
+		}
+		EncodeTable table = cache.get(lengths);
+		int[] length = table.getLength();
+		for (int i = off, end = off + len; i < end; i++) {
+			if (length[src[i] & 0xff] == 0) {
+				return encode(src, off, len);
+			}
+		}
+		ByteBufferBitSink sink = new ByteBufferBitSink(2 + 10 + len);
+		sink.write(tableId, 16);
+		return finish(sink, table, src, off, len);
+	}
+
+	private static byte[] finish(ByteBufferBitSink sink, EncodeTable table, byte[] src, int off, int len)
+			throws IOException {
+		MessageFormat.writeCount(sink, len);
+		table.encode(src, off, len, sink);
+		sink.padToByte();
+		return sink.toByteArray();
+	}
+
+	public TableCache<EncodeTable> getCache() {
+		return cache;
+	}
+
+	public SharedTables getTables() {
+		return tables;
+	}
+}
@@ -0,0 +1,119 @@
+package huffmanEncoder;
+
+import java.util.Arrays;
+
+/*
+ * counts of the symbols of a large alphabet in an open-addressing hash
+ * table of primitive arrays with linear probing, so counting a symbol
+ * neither boxes nor allocates; symbols can't be negative
+ */
+public class SymbolCounts {
+
+	private static final int EMPTY = -1;
+
+	private int[] keys;
+	private long[] counts;
+	private int size;
+	private int mask;
+	// 32 - log2 of the table size, the hash bits used
+	private int shift;
+
+	public SymbolCounts() {
+		this(1 << 10);
+	}
+
+	public SymbolCounts(int expected) {
+		int capacity = Integer.highestOneBit(Math.max(16, expected) * 2 - 1) << 1;
+		this.keys = new int[capacity];
+		this.counts = new long[capacity];
+		this.mask = capacity - 1;
+		this.shift = 32 - Integer.numberOfTrailingZeros(capacity);
+		this.size = 0;
+		Arrays.fill(keys, EMPTY);
+	}
+
+	// Fibonacci hashing spreads runs of neighbouring symbols over the table
+	private int home(int symbol) {
+		return (symbol * 0x9E3779B9) >>> shift;
+	}
+
+	public void add(int symbol) {
+		add(symbol, 1);
+	}
+
+	public void add(int symbol, long count) {
+		if (symbol < 0) {
+			throw new IllegalArgumentException("Negative symbol " + symbol);
+		}
+		int slot = home(symbol);
+		while (keys[slot] != symbol) {
+			if (keys[slot] == EMPTY) {
+				keys[slot] = symbol;
+				// at most half full, probes stay short
+				if (++size * 2 > keys.length) {
+					counts[slot] += count;
+					grow();
+					return;
+				}
+				break;
+			}
+			slot = (slot + 1) & mask;
+		}
+		counts[slot] += count;
+	}
+
+	// slot of symbol, -1 if it wasn't counted; slots change while symbols are added
+	public int slotOf(int symbol) {
+		int slot = home(symbol);
+		while (keys[slot] != symbol) {
+			if (keys[slot] == EMPTY) return -1;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	public long get(int symbol) {
+		int slot = slotOf(symbol);
+		return slot < 0 ? 0 : counts[slot];
+	}
+
+	// counted symbols in ascending order
+	public int[] symbols() {
+		int[] symbols = new int[size];
+		int i = 0;
+		for (int key : keys) {
+			if (key != EMPTY) symbols[i++] = key;
+		}
+		Arrays.sort(symbols);
+		return symbols;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		long[] oldCounts = counts;
+		keys = new int[oldKeys.length * 2];
+		counts = new long[oldKeys.length * 2];
+		mask = keys.length - 1;
+		shift--;
+		Arrays.fill(keys, EMPTY);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] == EMPTY) continue;
+			int slot = home(oldKeys[i]);
+			while (keys[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			keys[slot] = oldKeys[i];
+			counts[slot] = oldCounts[i];
+		}
+	}
+
+	// number of different symbols counted
+	public int size() {
+		return size;
+	}
+
+	// the table size, the range of slotOf
+	public int capacity() {
+		return keys.length;
+	}
+}
@@ -0,0 +1,75 @@
+package huffmanEncoder;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.SharedTables;
+
+/*
+ * builds a shared table from sample messages: their symbol counts plus 1
+ * for every symbol, so bytes missing from the samples still get a codeword
+ *
+ * usage: TableTrainer id name tableFile sampleFile...
+ * the table is added to tableFile, which is created if it doesn't exist
+ */
+public class TableTrainer {
+
+	private long[] counts;
+
+	public TableTrainer() {
+		this.counts = new long[SharedTables.ALPHABET_SIZE];
+	}
+
+	public void add(byte[] sample, int off, int len) {
+		Histogram.count(sample, off, len, counts);
+	}
+
+	public void add(InputStream in) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			add(buffer, 0, n);
+		}
+	}
+
+	// codeword lengths for everything added so far
+	public int[] train() {
+		return train(CodeLengths.DEFAULT_MAX_LENGTH);
+	}
+
+	public int[] train(int maxLength) {
+		long[] smoothed = new long[counts.length];
+		for (int i = 0; i < counts.length; i++) {
+			smoothed[i] = counts[i] + 1;
+		}
+		return CodeLengths.build(smoothed, maxLength);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 4) {
+			System.err.println("usage: TableTrainer id name tableFile sampleFile...");
+			System.exit(1);
+		}
+		TableTrainer trainer = new TableTrainer();
+		for (int i = 3; i < args.length; i++) {
+			InputStream in = new FileInputStream(args[i]);
+			try {
+				trainer.add(in);
+			} finally {
+				in.close();
+			}
+		}
+		SharedTables tables = new SharedTables();
+		tables.register(Integer.parseInt(args[0]), args[1], trainer.train());
+		OutputStream out = new FileOutputStream(args[2], true);
+		try {
+			tables.write(out);
+		} finally {
+			out.close();
+		}
+	}
+}
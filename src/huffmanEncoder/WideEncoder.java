@@ -0,0 +1,107 @@
+package huffmanEncoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import huffmanCanonical.SparseLengths;
+import huffmanCanonical.WideFormat;
+import io.ByteBufferBitSink;
+
+/*
+ * codes int symbols of an alphabet wider than a byte, e.g. 16-bit tokens
+ * or dictionary word ids, in the wide format; alphabets up to
+ * DENSE_ALPHABET_SIZE are counted in an array, larger ones in SymbolCounts,
+ * so only the symbols in use cost memory
+ */
+public class WideEncoder {
+
+	public static final int DENSE_ALPHABET_SIZE = 1 << 16;
+	// complete bytes are passed on once the sink holds this many
+	private static final int DRAIN_SIZE = 1 << 16;
+
+	private int alphabetSize;
+
+	public WideEncoder(int alphabetSize) {
+		WideFormat.checkAlphabetSize(alphabetSize);
+		this.alphabetSize = alphabetSize;
+	}
+
+	// code len symbols starting at off, every one from 0 to alphabet size - 1
+	public void encode(int[] symbols, int off, int len, OutputStream out) throws IOException {
+		boolean dense = alphabetSize <= DENSE_ALPHABET_SIZE;
+		int[] used;
+		long[] usedCounts;
+		SymbolCounts sparse = null;
+		if (dense) {
+			long[] counts = new long[alphabetSize];
+			int n = 0;
+			for (int i = off, end = off + len; i < end; i++) {
+				checkSymbol(symbols[i]);
+				if (counts[symbols[i]]++ == 0) n++;
+			}
+			used = new int[n];
+			usedCounts = new long[n];
+			for (int symbol = 0, k = 0; symbol < alphabetSize; symbol++) {
+				if (counts[symbol] == 0) continue;
+				used[k] = symbol;
+				usedCounts[k++] = counts[symbol];
+			}
+		} else {
+			sparse = new SymbolCounts();
+			for (int i = off, end = off + len; i < end; i++) {
+				checkSymbol(symbols[i]);
+				sparse.add(symbols[i]);
+			}
+			used = sparse.symbols();
+			usedCounts = new long[used.length];
+			for (int k = 0; k < used.length; k++) {
+				usedCounts[k] = sparse.get(used[k]);
+			}
+		}
+		if (used.length > SparseLengths.MAX_USED) {
+			throw new IllegalArgumentException("More than " + SparseLengths.MAX_USED + " different symbols");
+		}
+
+		// canonical code over the indices of the used symbols, then codeword and
+		// length by symbol, or by the slot of the symbol in the sparse counts
+		int[] lengths = CodeLengths.build(usedCounts, WideFormat.maxCodeLength(used.length));
+		CanonicalCode code = new CanonicalCode(lengths);
+		int size = dense ? alphabetSize : sparse.capacity();
+		int[] codeword = new int[size];
+		int[] length = new int[size];
+		for (int k = 0; k < used.length; k++) {
+			int at = dense ? used[k] : sparse.slotOf(used[k]);
+			codeword[at] = code.getCode()[k];
+			length[at] = lengths[k];
+		}
+
+		ByteBufferBitSink sink = new ByteBufferBitSink(2 * DRAIN_SIZE);
+		sink.write(WideFormat.MAGIC, 32);
+		sink.write(alphabetSize, 32);
+		sink.write(0, 32);
+		sink.write(len, 32);
+		new SparseLengths(used, lengths).write(sink);
+		for (int i = off, end = off + len; i < end; i++) {
+			int at = dense ? symbols[i] : sparse.slotOf(symbols[i]);
+			sink.write(codeword[at], length[at]);
+			if (sink.size() >= DRAIN_SIZE) {
+				sink.writeTo(out);
+			}
+		}
+		sink.padToByte();
+		sink.writeTo(out);
+		out.flush();
+	}
+
+	private void checkSymbol(int symbol) {
+		if (symbol < 0 || symbol >= alphabetSize) {
+			throw new IllegalArgumentException("Symbol " + symbol + " outside the alphabet of " + alphabetSize);
+		}
+	}
+
+	public int getAlphabetSize() {
+		return alphabetSize;
+	}
+}
@@ -0,0 +1,52 @@
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+public class BufferedStreamBitSource extends ByteBufferBitSource {
+	private InputStream _stream;
+	private byte[] _chunk;
+	private ByteBuffer _view;
+
+	/* Adapter for InputStreams: reads the stream in chunks into a
+	 * reused byte[] instead of one read() call per byte.
+	 */
+	public BufferedStreamBitSource(InputStream stream) {
+		this(stream, 1 << 16);
+	}
+
+	public BufferedStreamBitSource(InputStream stream, int chunkSize) {
+		this(stream, new byte[chunkSize]);
+	}
+
+	private BufferedStreamBitSource(InputStream stream, byte[] chunk) {
+		super(emptyView(chunk));
+		_stream = stream;
+		_chunk = chunk;
+		_view = null;
+	}
+
+	private static ByteBuffer emptyView(byte[] chunk) {
+		ByteBuffer view = ByteBuffer.wrap(chunk);
+		view.limit(0);
+		return view;
+	}
+
+	@Override
+	protected ByteBuffer nextSegment() throws IOException {
+		int read = _stream.read(_chunk);
+		while (read == 0) {
+			read = _stream.read(_chunk);
+		}
+		if (read < 0) {
+			return null;
+		}
+		if (_view == null) {
+			_view = ByteBuffer.wrap(_chunk);
+		}
+		_view.clear();
+		_view.limit(read);
+		return _view;
+	}
+}
@@ -0,0 +1,226 @@
+package io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+
+public class ByteBufferBitSink implements BitSink {
+	private ByteBuffer _buffer;
+	private boolean _growable;
+	private boolean _scratch;
+	private int _start;
+	private int _position;
+	private long _accumulator;
+	private int _pending;
+	private long _written;
+
+	/* Growable sink backed by a heap byte[].
+	 */
+	public ByteBufferBitSink() {
+		this(1 << 16);
+	}
+
+	public ByteBufferBitSink(int capacity) {
+		_buffer = ByteBuffer.allocate(Math.max(capacity, 8));
+		_growable = true;
+		_scratch = true;
+		_start = 0;
+		_position = 0;
+		_accumulator = 0;
+		_pending = 0;
+		_written = 0;
+	}
+
+	/* Fixed size sink writing into a heap, direct or mapped buffer,
+	 * starting at its current position. Running out of room throws
+	 * BufferOverflowException. Bits go out most significant first
+	 * whatever the buffer's byte order, and no byte past the last
+	 * complete one is touched.
+	 */
+	public ByteBufferBitSink(ByteBuffer buffer) {
+		this(buffer, false);
+	}
+
+	/* Same as above; with scratch set the bytes between the last
+	 * complete byte and the limit belong to the sink, so it may store
+	 * 8 bytes at once and leave up to 7 zero bytes past the end.
+	 */
+	public ByteBufferBitSink(ByteBuffer buffer, boolean scratch) {
+		_buffer = bigEndian(buffer);
+		_growable = false;
+		_scratch = scratch;
+		_start = buffer.position();
+		_position = _start;
+		_accumulator = 0;
+		_pending = 0;
+		_written = 0;
+	}
+
+	/* reset
+	 * Starts over as a fixed size sink writing into buffer from its
+	 * current position, same as a new sink but without allocating.
+	 * Bits of an unfinished byte are dropped.
+	 */
+	public void reset(ByteBuffer buffer) {
+		reset(buffer, false);
+	}
+
+	public void reset(ByteBuffer buffer, boolean scratch) {
+		_buffer = bigEndian(buffer);
+		_growable = false;
+		_scratch = scratch;
+		_start = buffer.position();
+		_position = _start;
+		_accumulator = 0;
+		_pending = 0;
+		_written = 0;
+	}
+
+	/* write
+	 * Writes the lower order length bits of bits, length must be less
+	 * than or equal to 57. The accumulator never holds more than 7 bits
+	 * between calls, so whole bytes are stored with one 64-bit store
+	 * where the sink owns the 8 bytes from the current position, one
+	 * byte at a time otherwise.
+	 */
+	public int write(long bits, int length) throws IOException {
+		if (length > 57) {
+			throw new RuntimeException("Can't write more than 57 bits from a long");
+		}
+		if (length <= 0) {
+			return 0;
+		}
+		_accumulator = (_accumulator << length) | (bits & ((1L << length) - 1));
+		_pending += length;
+		_written += length;
+		if (_pending >= 8) {
+			int bytes = _pending >>> 3;
+			if (_growable && _buffer.limit() - _position < 8) {
+				ensureCapacity(8);
+			}
+			if (_scratch && _buffer.limit() - _position >= 8) {
+				_buffer.putLong(_position, _accumulator << (64 - _pending));
+			} else {
+				ensureCapacity(bytes);
+				for (int i = 1; i <= bytes; i++) {
+					_buffer.put(_position + i - 1, (byte) (_accumulator >>> (_pending - 8 * i)));
+				}
+			}
+			_position += bytes;
+			_pending &= 7;
+		}
+		return length;
+	}
+
+	@Override
+	public int write(int bits, int length) throws IOException {
+		if (length > 32) {
+			throw new RuntimeException("Can't write more than 32 bits from an int");
+		}
+		return write((long) bits, length);
+	}
+
+	@Override
+	public int write(String bitstring) throws IOException {
+		for (int i=0; i<bitstring.length(); i++) {
+			if (bitstring.charAt(i) == '0') {
+				write(0x0L, 1);
+			} else if (bitstring.charAt(i) == '1') {
+				write(0x1L, 1);
+			} else {
+				throw new RuntimeException(
+					"Can only write characters '0' or '1'; '" +
+					bitstring.charAt(i) + "' encountered."
+				);
+			}
+		}
+		return bitstring.length();
+	}
+
+	/* padToWord
+	 * Same as OutputStreamBitSink: always writes between 1 and 32
+	 * 0 bits, a full word if already aligned.
+	 */
+	@Override
+	public int padToWord() throws IOException {
+		return write(0x0L, 32 - (int) (_written & 31));
+	}
+
+	/* padToByte
+	 * Writes 0 bits until the last byte is complete.
+	 */
+	public int padToByte() throws IOException {
+		return write(0x0L, (8 - _pending) & 7);
+	}
+
+	/* writeTo
+	 * Moves the complete bytes written so far to stream or channel
+	 * and starts over at the beginning of the buffer. Bits of an
+	 * unfinished byte stay in the sink. Streams need a heap buffer.
+	 */
+	public void writeTo(OutputStream stream) throws IOException {
+		stream.write(_buffer.array(), _buffer.arrayOffset() + _start, _position - _start);
+		_position = _start;
+	}
+
+	public void writeTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer view = _buffer.duplicate();
+		view.limit(_position);
+		view.position(_start);
+		while (view.hasRemaining()) {
+			channel.write(view);
+		}
+		_position = _start;
+	}
+
+	public byte[] toByteArray() {
+		byte[] bytes = new byte[_position - _start];
+		ByteBuffer view = _buffer.duplicate();
+		view.position(_start);
+		view.get(bytes);
+		return bytes;
+	}
+
+	/* Number of complete bytes currently held by the sink.
+	 */
+	public int size() {
+		return _position - _start;
+	}
+
+	/* Total number of bits written, including drained ones.
+	 */
+	public long bitsWritten() {
+		return _written;
+	}
+
+	public ByteBuffer buffer() {
+		return _buffer;
+	}
+
+	/* Big-endian view of buffer, the buffer itself if it already is
+	 * one, so only little-endian buffers cost an allocation.
+	 */
+	private static ByteBuffer bigEndian(ByteBuffer buffer) {
+		if (buffer.order() == ByteOrder.BIG_ENDIAN) {
+			return buffer;
+		}
+		return buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private void ensureCapacity(int bytes) {
+		if (_buffer.limit() - _position >= bytes) {
+			return;
+		}
+		if (!_growable) {
+			throw new BufferOverflowException();
+		}
+		ByteBuffer grown = ByteBuffer.allocate(Math.max(_buffer.capacity() * 2, _position + bytes + 8));
+		_buffer.position(0);
+		_buffer.limit(_position);
+		grown.put(_buffer);
+		_buffer = grown;
+	}
+}
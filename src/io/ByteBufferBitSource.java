@@ -0,0 +1,160 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class ByteBufferBitSource implements PeekableBitSource {
+	private ByteBuffer[] _segments;
+	private int _segment;
+	private ByteBuffer _current;
+	private long _window;
+	private int _bits;
+	private long _loaded;
+	private long _consumed;
+	private ByteBuffer[] _single;
+
+	/* Reads the remaining bytes of each buffer in turn. The buffers
+	 * can be heap, direct or mapped, e.g. the segments of a file
+	 * larger than one mapping allows. Bits are read most significant
+	 * first whatever the buffers' byte order.
+	 */
+	public ByteBufferBitSource(ByteBuffer... segments) {
+		_segments = segments;
+		_segment = 0;
+		_current = segments.length > 0 ? bigEndian(segments[0]) : null;
+		_window = 0;
+		_bits = 0;
+		_loaded = 0;
+		_consumed = 0;
+	}
+
+	public ByteBufferBitSource(byte[] bytes) {
+		this(ByteBuffer.wrap(bytes));
+	}
+
+	/* reset
+	 * Starts over reading the remaining bytes of buffer, same as a
+	 * new source but without allocating after the first reset. The
+	 * array of buffers given to the constructor is left alone.
+	 */
+	public void reset(ByteBuffer buffer) {
+		if (_single == null) {
+			_single = new ByteBuffer[1];
+		}
+		_single[0] = buffer;
+		_segments = _single;
+		_segment = 0;
+		_current = bigEndian(buffer);
+		_window = 0;
+		_bits = 0;
+		_loaded = 0;
+		_consumed = 0;
+	}
+
+	/* nextSegment
+	 * Called when the current buffer is used up, returns the next
+	 * buffer to read from or null at the end of the source.
+	 */
+	protected ByteBuffer nextSegment() throws IOException {
+		_segment++;
+		return _segment < _segments.length ? _segments[_segment] : null;
+	}
+
+	/* Big-endian view of buffer for the 64-bit loads, the buffer
+	 * itself if it already is one. Null stays null.
+	 */
+	private static ByteBuffer bigEndian(ByteBuffer buffer) {
+		if (buffer == null || buffer.order() == ByteOrder.BIG_ENDIAN) {
+			return buffer;
+		}
+		return buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+	}
+
+	/* refill
+	 * Tops the window up to at least 56 bits. Takes 8 bytes with a
+	 * single load when the current buffer has them, pads with 0
+	 * bits once the source is used up.
+	 */
+	private void refill() throws IOException {
+		while (_bits < 56) {
+			if (_current != null && _current.remaining() >= 8) {
+				int bytes = (63 - _bits) >>> 3;
+				int position = _current.position();
+				long next = _current.getLong(position);
+				_window = (_window << (bytes << 3)) | (next >>> (64 - (bytes << 3)));
+				_current.position(position + bytes);
+				_bits += bytes << 3;
+				_loaded += bytes << 3;
+				return;
+			}
+			if (_current != null && _current.hasRemaining()) {
+				_window = (_window << 8) | (_current.get() & 0xff);
+				_loaded += 8;
+			} else if (_current != null && (_current = bigEndian(nextSegment())) != null) {
+				continue;
+			} else {
+				_window <<= 8;
+			}
+			_bits += 8;
+		}
+	}
+
+	@Override
+	public long peek(int count) throws IOException {
+		if (_bits < count) {
+			refill();
+		}
+		return (_window >>> (_bits - count)) & ((1L << count) - 1);
+	}
+
+	@Override
+	public void skip(int count) throws IOException {
+		if (_bits < count) {
+			refill();
+		}
+		_bits -= count;
+		_consumed += count;
+	}
+
+	@Override
+	public int next(int count) throws InsufficientBitsLeftException, IOException {
+		if (count > 32) {
+			throw new RuntimeException("Can't read more than 32 bits as an int");
+		}
+		if (count <= 0) {
+			return 0;
+		}
+		int value = (int) peek(count);
+		if (_loaded - _consumed < count) {
+			throw new InsufficientBitsLeftException((int) Math.max(0, _loaded - _consumed));
+		}
+		skip(count);
+		return value;
+	}
+
+	@Override
+	public long bitsPastEnd() {
+		return Math.max(0, _consumed - _loaded);
+	}
+
+	/* Number of bits consumed so far.
+	 */
+	public long consumed() {
+		return _consumed;
+	}
+
+	/* Number of bits left before the end of the source, not counting
+	 * bytes an InputStream adapter has not read yet.
+	 */
+	public long remaining() {
+		long left = _loaded - _consumed;
+		if (_current != null) {
+			left += (long) _current.remaining() << 3;
+			for (int i = _segment + 1; i < _segments.length; i++) {
+				left += (long) _segments[i].remaining() << 3;
+			}
+		}
+		return Math.max(0, left);
+	}
+}
@@ -0,0 +1,80 @@
+package io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedSegments {
+	/* A single mapping is limited to 2^31 - 1 bytes, so larger
+	 * regions are mapped as consecutive segments of this size.
+	 * The size is even so symbol pairs never straddle two segments.
+	 */
+	public static final int SEGMENT_SIZE = 1 << 30;
+
+	private MappedSegments() {
+	}
+
+	/* map
+	 * Maps size bytes of channel starting at position as one or
+	 * more consecutive segments.
+	 */
+	public static MappedByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode,
+			long position, long size) throws IOException {
+		int count = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		MappedByteBuffer[] segments = new MappedByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long offset = (long) i * SEGMENT_SIZE;
+			segments[i] = channel.map(mode, position + offset, Math.min(SEGMENT_SIZE, size - offset));
+		}
+		return segments;
+	}
+
+	/* read
+	 * Copies length bytes starting at offset of the mapped region
+	 * into dst, across segment boundaries. Works on duplicates, so
+	 * several threads can read from the same segments at once.
+	 */
+	public static void read(ByteBuffer[] segments, long offset, byte[] dst, int off, int length) {
+		while (length > 0) {
+			ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+			segment.position((int) (offset % SEGMENT_SIZE));
+			int count = Math.min(length, segment.remaining());
+			segment.get(dst, off, count);
+			offset += count;
+			off += count;
+			length -= count;
+		}
+	}
+
+	/* write
+	 * Copies length bytes of src into the mapped region starting at
+	 * offset, across segment boundaries.
+	 */
+	public static void write(ByteBuffer[] segments, long offset, byte[] src, int off, int length) {
+		while (length > 0) {
+			ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+			segment.position((int) (offset % SEGMENT_SIZE));
+			int count = Math.min(length, segment.remaining());
+			segment.put(src, off, count);
+			offset += count;
+			off += count;
+			length -= count;
+		}
+	}
+
+	/* slice
+	 * View of length bytes starting at offset of the mapped region,
+	 * or null if they straddle two segments.
+	 */
+	public static ByteBuffer slice(ByteBuffer[] segments, long offset, int length) {
+		ByteBuffer segment = segments[(int) (offset / SEGMENT_SIZE)].duplicate();
+		int start = (int) (offset % SEGMENT_SIZE);
+		if (length > segment.limit() - start) {
+			return null;
+		}
+		segment.position(start);
+		segment.limit(start + length);
+		return segment.slice();
+	}
+}
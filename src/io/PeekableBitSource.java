@@ -0,0 +1,25 @@
+package io;
+
+import java.io.IOException;
+
+public interface PeekableBitSource extends BitSource {
+	/* peek
+	 * Returns the next count bits as lower order bits without
+	 * consuming them. Count must be less than or equal to 56.
+	 * Past the end of the source the bits read as 0, so a
+	 * decoder can look ahead freely and check bitsPastEnd()
+	 * once it is done instead of on every call.
+	 */
+	long peek(int count) throws IOException;
+
+	/* skip
+	 * Consumes count bits, normally after a peek of at least
+	 * count bits. Count must be less than or equal to 56.
+	 */
+	void skip(int count) throws IOException;
+
+	/* bitsPastEnd
+	 * Number of 0 bits consumed beyond the end of the source.
+	 */
+	long bitsPastEnd();
+}
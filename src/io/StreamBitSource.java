@@ -0,0 +1,79 @@
+package io;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public class StreamBitSource implements PeekableBitSource {
+	private InputStream _stream;
+	private long _window;
+	private int _bits;
+	private long _consumed;
+	private long _pastEnd;
+
+	/* Peekable source for interactive streams: reads one byte at a
+	 * time and only as many as a peek needs, so it never blocks on
+	 * bytes the writer hasn't sent yet. Wrap the stream in a
+	 * BufferedInputStream, the reads go through read().
+	 */
+	public StreamBitSource(InputStream stream) {
+		_stream = stream;
+		_window = 0;
+		_bits = 0;
+		_consumed = 0;
+		_pastEnd = 0;
+	}
+
+	private void fill(int count) throws IOException {
+		while (_bits < count) {
+			int next = _stream.read();
+			_window = (_window << 8) | (next < 0 ? 0 : next);
+			if (next < 0) {
+				_pastEnd += 8;
+			}
+			_bits += 8;
+		}
+	}
+
+	@Override
+	public long peek(int count) throws IOException {
+		fill(count);
+		return (_window >>> (_bits - count)) & ((1L << count) - 1);
+	}
+
+	@Override
+	public void skip(int count) throws IOException {
+		fill(count);
+		_bits -= count;
+		_consumed += count;
+	}
+
+	@Override
+	public int next(int count) throws InsufficientBitsLeftException, IOException {
+		if (count > 32) {
+			throw new RuntimeException("Can't read more than 32 bits as an int");
+		}
+		if (count <= 0) {
+			return 0;
+		}
+		int value = (int) peek(count);
+		skip(count);
+		if (bitsPastEnd() > 0) {
+			throw new InsufficientBitsLeftException(0);
+		}
+		return value;
+	}
+
+	/* Zero bits read past the end of the stream that were consumed,
+	 * peeked ones don't count.
+	 */
+	@Override
+	public long bitsPastEnd() {
+		return Math.max(0, _pastEnd - _bits);
+	}
+
+	/* Number of bits consumed so far.
+	 */
+	public long consumed() {
+		return _consumed;
+	}
+}
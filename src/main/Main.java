@@ -2,71 +2,50 @@ package main;
 
 import io.*;
 import java.io.*;
-import java.util.Map;
 
-import huffmanDecoder.Cell;
 import huffmanDecoder.HuffmanDecoder;
 import huffmanEncoder.HuffmanEncoder;
-
+import metrics.CodecListener;
+import metrics.CodecMetrics;
+import metrics.CodecStats;
+
+/*
+ * decodes a compressed file, encodes the result again and decodes that,
+ * printing the metrics of every step
+ *
+ * usage: Main fileToDecode decodedFile encodedFile decodedFile2
+ */
 public class Main {
 
 	public static void main(String[] args) throws InsufficientBitsLeftException, IOException {
-		// TODO Auto-generated method stub
+		if (args.length != 4) {
+			System.err.println("usage: Main fileToDecode decodedFile encodedFile decodedFile2");
+			System.exit(1);
+		}
+		String fileToDecode = args[0];
+		String decodedFile = args[1];
+		String encodedFile = args[2];
+		String decodedFileBasedOnEncoding = args[3];
+
+		// print the phase timings, sizes, bits per symbol and throughput of every call
+		CodecMetrics.addListener(new CodecListener() {
+			@Override
+			public void completed(CodecStats stats) {
+				System.out.println(stats);
+			}
+		});
 
-		String fileToDecode = "/Users/michael_zhao/eclipse-workspace/HuffmanCode/data/compressed.dat";
-		String decodedFile = "/Users/michael_zhao/eclipse-workspace/HuffmanCode/data/decodedFile.dat";
-		String encodedFile= "/Users/michael_zhao/eclipse-workspace/HuffmanCode/data/encodedFile.dat";
-		String decodedFileBasedOnEncoding= "/Users/michael_zhao/eclipse-workspace/HuffmanCode/data/decodedFile2.dat";
-		
-		// record decoding and encoding time
-		long firstDecoderStarts = 0;
-		long encoderStarts = 0;
-		long lastDecoderStarts = 0;
-		long lastDecoderEnds = 0;
-		
 		// first decoder
-		firstDecoderStarts = System.currentTimeMillis();
 		HuffmanDecoder decoder = new HuffmanDecoder(fileToDecode, decodedFile);
 		decoder.decode();
 
 		// encoder
-		encoderStarts = System.currentTimeMillis();
-		System.out.println("The first decoder costs: " + (encoderStarts - 
-				 firstDecoderStarts) + " milli seconds");
 		HuffmanEncoder encoder = new HuffmanEncoder(decodedFile, encodedFile);
 		encoder.encode();
-		
-		// last decoder
-		lastDecoderStarts = System.currentTimeMillis();
-		System.out.println("The encoder costs: " + (lastDecoderStarts - 
-				encoderStarts) + " milli seconds");
 
+		// last decoder
 		HuffmanDecoder decoder2 = new HuffmanDecoder(encodedFile, decodedFileBasedOnEncoding);
 		decoder2.decode();
-		lastDecoderEnds = System.currentTimeMillis();
-		System.out.println("The last decoder costs: " + (lastDecoderEnds - 
-				lastDecoderStarts) + " milli seconds");
-		
-		/*
-		 * calculate original compressed file entropy
-		 */
-//		HuffmanDecoder decoder = new HuffmanDecoder(fileToDecode, decodedFile);
-//		decoder.decode();
-//		HuffmanEncoder encoder = new HuffmanEncoder(decodedFile, encodedFile);
-//		encoder.encode();
-//		Map<Integer, Double> frequencyMap = encoder.getFrequencyMap();
-//		Cell[] symbols = decoder.getSymbols();
-//		double entropy = 0.0;
-//		for (Map.Entry<Integer, Double> entry : frequencyMap.entrySet()) {
-//			if (entry.getValue() > 0) {
-//				
-//				entropy += entry.getValue() * symbols[entry.getKey()].getLength();
-//				System.out.println(entry.getValue() + " " + entry.getKey() + " " + 
-//						symbols[entry.getKey()].getLength() + " " + entropy);
-//			}
-//		}
-//		System.out.println("compressed entropy: " + entropy);
-
 	}
 
 }
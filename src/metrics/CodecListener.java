@@ -0,0 +1,8 @@
+package metrics;
+
+// told about every encode or decode call once it is done, registered with CodecMetrics
+public interface CodecListener {
+
+	// called on the thread that did the work, should return quickly
+	void completed(CodecStats stats);
+}
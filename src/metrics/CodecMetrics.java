@@ -0,0 +1,40 @@
+package metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// listeners told about every encode and decode call, and a Flight Recorder event per call
+// while a recording has huffman.Codec enabled; nothing is measured while neither wants it
+public class CodecMetrics {
+
+	private static final List<CodecListener> listeners = new CopyOnWriteArrayList<CodecListener>();
+
+	private CodecMetrics() {
+	}
+
+	public static void addListener(CodecListener listener) {
+		listeners.add(listener);
+	}
+
+	public static void removeListener(CodecListener listener) {
+		listeners.remove(listener);
+	}
+
+	public static boolean isEnabled() {
+		return !listeners.isEmpty();
+	}
+
+	// a timer for a call starting now, the no-op timer if nobody listens or records
+	public static PhaseTimer startTimer() {
+		if (FlightRecorderEvents.isEnabled()) {
+			return new PhaseTimer(true, FlightRecorderEvents.begin());
+		}
+		return isEnabled() ? new PhaseTimer(true) : PhaseTimer.DISABLED;
+	}
+
+	static void publish(CodecStats stats) {
+		for (CodecListener listener : listeners) {
+			listener.completed(stats);
+		}
+	}
+}
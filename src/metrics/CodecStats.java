@@ -0,0 +1,86 @@
+package metrics;
+
+// what one encode or decode call did and where its time went
+public class CodecStats {
+
+	public static final String ENCODE = "encode";
+	public static final String DECODE = "decode";
+
+	private String operation;
+	private String file;
+	// indexed by Phase ordinal, 0 for phases the call doesn't have
+	private long[] phaseNanos;
+	private long totalNanos;
+	private long uncompressedBytes;
+	private long compressedBytes;
+	private int maxCodeLength;
+
+	public CodecStats(String operation, String file, long[] phaseNanos, long totalNanos, long uncompressedBytes,
+			long compressedBytes, int maxCodeLength) {
+		this.operation = operation;
+		this.file = file;
+		this.phaseNanos = phaseNanos;
+		this.totalNanos = totalNanos;
+		this.uncompressedBytes = uncompressedBytes;
+		this.compressedBytes = compressedBytes;
+		this.maxCodeLength = maxCodeLength;
+	}
+
+	// uncompressed bytes per compressed byte, for the encoder and the decoder alike
+	public double getCompressionRatio() {
+		return compressedBytes == 0 ? 0 : (double) uncompressedBytes / compressedBytes;
+	}
+
+	// compressed bits per input symbol, header included
+	public double getBitsPerSymbol() {
+		return uncompressedBytes == 0 ? 0 : 8.0 * compressedBytes / uncompressedBytes;
+	}
+
+	// uncompressed megabytes (2^20 bytes) per second
+	public double getThroughput() {
+		return totalNanos == 0 ? 0 : uncompressedBytes / (double) (1 << 20) / (totalNanos / 1e9);
+	}
+
+	public long getPhaseNanos(Phase phase) {
+		return phaseNanos[phase.ordinal()];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append(String.format("%s %s: %d -> %d bytes, ratio %.3f, %.3f bits/symbol, max code length %d, %.1f MB/s, %.3f ms",
+				operation, file, uncompressedBytes, compressedBytes, getCompressionRatio(), getBitsPerSymbol(),
+				maxCodeLength, getThroughput(), totalNanos / 1e6));
+		for (Phase phase : Phase.values()) {
+			if (phaseNanos[phase.ordinal()] > 0) {
+				s.append(String.format(", %s %.3f ms", phase.name().toLowerCase(), phaseNanos[phase.ordinal()] / 1e6));
+			}
+		}
+		return s.toString();
+	}
+
+	// getters below
+	public String getOperation() {
+		return operation;
+	}
+
+	public String getFile() {
+		return file;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getUncompressedBytes() {
+		return uncompressedBytes;
+	}
+
+	public long getCompressedBytes() {
+		return compressedBytes;
+	}
+
+	public int getMaxCodeLength() {
+		return maxCodeLength;
+	}
+}
@@ -0,0 +1,115 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// listener keeping running totals, exposed over JMX once registered
+public class CodecStatsCollector implements CodecListener, CodecStatsMXBean {
+
+	public static final String OBJECT_NAME = "huffman:type=CodecStats";
+
+	private AtomicLong encodeCount = new AtomicLong();
+	private AtomicLong decodeCount = new AtomicLong();
+	private AtomicLong uncompressedBytes = new AtomicLong();
+	private AtomicLong compressedBytes = new AtomicLong();
+	private AtomicLongArray phaseNanos = new AtomicLongArray(Phase.values().length);
+	private volatile CodecStats last;
+
+	// a collector listening to every call and registered with the platform MBean server
+	public static CodecStatsCollector register() throws JMException {
+		CodecStatsCollector collector = new CodecStatsCollector();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(collector, new ObjectName(OBJECT_NAME));
+		CodecMetrics.addListener(collector);
+		return collector;
+	}
+
+	public static void unregister(CodecStatsCollector collector) throws JMException {
+		CodecMetrics.removeListener(collector);
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+	}
+
+	@Override
+	public void completed(CodecStats stats) {
+		if (CodecStats.ENCODE.equals(stats.getOperation())) encodeCount.incrementAndGet();
+		else decodeCount.incrementAndGet();
+		uncompressedBytes.addAndGet(stats.getUncompressedBytes());
+		compressedBytes.addAndGet(stats.getCompressedBytes());
+		for (Phase phase : Phase.values()) {
+			phaseNanos.addAndGet(phase.ordinal(), stats.getPhaseNanos(phase));
+		}
+		last = stats;
+	}
+
+	@Override
+	public long getEncodeCount() {
+		return encodeCount.get();
+	}
+
+	@Override
+	public long getDecodeCount() {
+		return decodeCount.get();
+	}
+
+	@Override
+	public long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+
+	@Override
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+
+	@Override
+	public double getCompressionRatio() {
+		long compressed = compressedBytes.get();
+		return compressed == 0 ? 0 : (double) uncompressedBytes.get() / compressed;
+	}
+
+	@Override
+	public double getLastCompressionRatio() {
+		CodecStats stats = last;
+		return stats == null ? 0 : stats.getCompressionRatio();
+	}
+
+	@Override
+	public int getLastMaxCodeLength() {
+		CodecStats stats = last;
+		return stats == null ? 0 : stats.getMaxCodeLength();
+	}
+
+	@Override
+	public double getLastThroughput() {
+		CodecStats stats = last;
+		return stats == null ? 0 : stats.getThroughput();
+	}
+
+	@Override
+	public Map<String, Double> getPhaseMillis() {
+		Map<String, Double> millis = new LinkedHashMap<String, Double>();
+		for (Phase phase : Phase.values()) {
+			millis.put(phase.name(), phaseNanos.get(phase.ordinal()) / 1e6);
+		}
+		return millis;
+	}
+
+	@Override
+	public void reset() {
+		encodeCount.set(0);
+		decodeCount.set(0);
+		uncompressedBytes.set(0);
+		compressedBytes.set(0);
+		for (int i = 0; i < phaseNanos.length(); i++) {
+			phaseNanos.set(i, 0);
+		}
+		last = null;
+	}
+}
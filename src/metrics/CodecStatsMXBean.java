@@ -0,0 +1,29 @@
+package metrics;
+
+import java.util.Map;
+
+// totals over all calls seen by a CodecStatsCollector, as shown by JConsole or VisualVM
+public interface CodecStatsMXBean {
+
+	long getEncodeCount();
+
+	long getDecodeCount();
+
+	long getUncompressedBytes();
+
+	long getCompressedBytes();
+
+	// over all calls so far
+	double getCompressionRatio();
+
+	double getLastCompressionRatio();
+
+	int getLastMaxCodeLength();
+
+	double getLastThroughput();
+
+	// milliseconds spent in every phase so far, by phase name
+	Map<String, Double> getPhaseMillis();
+
+	void reset();
+}
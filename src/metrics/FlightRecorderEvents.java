@@ -0,0 +1,142 @@
+package metrics;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * the huffman.Codec Flight Recorder event, one per encode or decode call with
+ * the numbers of its CodecStats; the event type is made at runtime through
+ * jdk.jfr.EventFactory by reflection, so the project builds for Java 8 and
+ * runs where there is no jdk.jfr (before 8u262), the event just never fires
+ */
+final class FlightRecorderEvents {
+
+	static final String NAME = "huffman.Codec";
+
+	// null without jdk.jfr
+	private static final FlightRecorderEvents INSTANCE = load();
+
+	private Object factory;
+	private Method newEvent;
+	private Object type;
+	private Method typeEnabled;
+	private Method begin;
+	private Method set;
+	private Method shouldCommit;
+	private Method commit;
+
+	private FlightRecorderEvents() {
+	}
+
+	private static FlightRecorderEvents load() {
+		try {
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+			Class<?> typeClass = Class.forName("jdk.jfr.EventType");
+			Class<?> annotationClass = Class.forName("jdk.jfr.AnnotationElement");
+			Class<?> descriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+			Constructor<?> annotation = annotationClass.getConstructor(Class.class, Object.class);
+			Constructor<?> descriptor = descriptorClass.getConstructor(Class.class, String.class, List.class);
+
+			List<Object> eventAnnotations = new ArrayList<Object>();
+			eventAnnotations.add(annotation.newInstance(annotationType("jdk.jfr.Name"), NAME));
+			eventAnnotations.add(annotation.newInstance(annotationType("jdk.jfr.Label"), "Huffman Codec"));
+			eventAnnotations.add(annotation.newInstance(annotationType("jdk.jfr.Category"), new String[] { "Huffman" }));
+			eventAnnotations.add(annotation.newInstance(annotationType("jdk.jfr.Description"),
+					"One encode or decode call with its phase durations and sizes"));
+
+			// fields in the order set() fills them in
+			List<Object> fields = new ArrayList<Object>();
+			fields.add(descriptor.newInstance(String.class, "operation", label(annotation, "Operation")));
+			fields.add(descriptor.newInstance(String.class, "file", label(annotation, "File")));
+			fields.add(descriptor.newInstance(long.class, "uncompressedBytes", bytes(annotation, "Uncompressed Bytes")));
+			fields.add(descriptor.newInstance(long.class, "compressedBytes", bytes(annotation, "Compressed Bytes")));
+			fields.add(descriptor.newInstance(int.class, "maxCodeLength", label(annotation, "Max Code Length")));
+			for (Phase phase : Phase.values()) {
+				fields.add(descriptor.newInstance(long.class, fieldName(phase), nanos(annotation, phase.name())));
+			}
+
+			FlightRecorderEvents events = new FlightRecorderEvents();
+			events.factory = factoryClass.getMethod("create", List.class, List.class)
+					.invoke(null, eventAnnotations, fields);
+			events.newEvent = factoryClass.getMethod("newEvent");
+			events.type = factoryClass.getMethod("getEventType").invoke(events.factory);
+			events.typeEnabled = typeClass.getMethod("isEnabled");
+			events.begin = eventClass.getMethod("begin");
+			events.set = eventClass.getMethod("set", int.class, Object.class);
+			events.shouldCommit = eventClass.getMethod("shouldCommit");
+			events.commit = eventClass.getMethod("commit");
+			return events;
+		} catch (ReflectiveOperationException e) {
+			// no jdk.jfr, or one without EventFactory
+			return null;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Annotation> annotationType(String name) throws ClassNotFoundException {
+		return (Class<? extends Annotation>) Class.forName(name);
+	}
+
+	private static List<Object> label(Constructor<?> annotation, String label) throws ReflectiveOperationException {
+		return Arrays.asList(annotation.newInstance(annotationType("jdk.jfr.Label"), label));
+	}
+
+	private static List<Object> bytes(Constructor<?> annotation, String label) throws ReflectiveOperationException {
+		return Arrays.asList(annotation.newInstance(annotationType("jdk.jfr.Label"), label),
+				annotation.newInstance(annotationType("jdk.jfr.DataAmount"), "BYTES"));
+	}
+
+	private static List<Object> nanos(Constructor<?> annotation, String label) throws ReflectiveOperationException {
+		return Arrays.asList(annotation.newInstance(annotationType("jdk.jfr.Label"), label),
+				annotation.newInstance(annotationType("jdk.jfr.Timespan"), "NANOSECONDS"));
+	}
+
+	// CODE_LENGTHS -> codeLengths
+	private static String fieldName(Phase phase) {
+		StringBuilder name = new StringBuilder();
+		for (String word : phase.name().toLowerCase().split("_")) {
+			name.append(name.length() == 0 ? word : Character.toUpperCase(word.charAt(0)) + word.substring(1));
+		}
+		return name.toString();
+	}
+
+	// whether a recording has the event enabled right now
+	static boolean isEnabled() {
+		if (INSTANCE == null) return false;
+		return (Boolean) INSTANCE.call(INSTANCE.typeEnabled, INSTANCE.type);
+	}
+
+	// a new event of a call starting now
+	static Object begin() {
+		Object event = INSTANCE.call(INSTANCE.newEvent, INSTANCE.factory);
+		INSTANCE.call(INSTANCE.begin, event);
+		return event;
+	}
+
+	static void commit(Object event, CodecStats stats) {
+		FlightRecorderEvents events = INSTANCE;
+		if (!(Boolean) events.call(events.shouldCommit, event)) return;
+		Object[] values = { stats.getOperation(), stats.getFile(), stats.getUncompressedBytes(),
+				stats.getCompressedBytes(), stats.getMaxCodeLength() };
+		for (int i = 0; i < values.length; i++) {
+			events.call(events.set, event, i, values[i]);
+		}
+		for (Phase phase : Phase.values()) {
+			events.call(events.set, event, values.length + phase.ordinal(), stats.getPhaseNanos(phase));
+		}
+		events.call(events.commit, event);
+	}
+
+	private Object call(Method method, Object target, Object... args) {
+		try {
+			return method.invoke(target, args);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Flight Recorder call " + method.getName() + " failed", e);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * lock-free histogram of durations in nanoseconds for percentiles: a bucket
+ * per power of two split into SUB_BUCKETS linear steps, so every value is
+ * within 1 / SUB_BUCKETS of its bucket's upper bound
+ */
+public class LatencyHistogram {
+
+	public static final int SUB_BITS = 3;
+	public static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private AtomicLongArray buckets;
+	private AtomicLong count;
+	private AtomicLong total;
+	private AtomicLong max;
+
+	public LatencyHistogram() {
+		this.buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+		this.count = new AtomicLong();
+		this.total = new AtomicLong();
+		this.max = new AtomicLong();
+	}
+
+	public void record(long nanos) {
+		if (nanos < 0) nanos = 0;
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		long previous;
+		while (nanos > (previous = max.get()) && !max.compareAndSet(previous, nanos)) {
+		}
+	}
+
+	// values below SUB_BUCKETS have a bucket each, above that the top SUB_BITS + 1 bits pick it
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+		return (exponent + 1) * SUB_BUCKETS + (int) ((value >>> exponent) & (SUB_BUCKETS - 1));
+	}
+
+	// largest value that falls in bucket
+	private static long upperBound(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int exponent = bucket / SUB_BUCKETS - 1;
+		long base = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << exponent;
+		return base + (1L << exponent) - 1;
+	}
+
+	// value below which the fraction p (0 to 1) of the recorded values lie, 0 if there are none
+	public long percentile(double p) {
+		long n = count.get();
+		if (n == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(p * n));
+		long seen = 0;
+		for (int i = 0; i < buckets.length(); i++) {
+			seen += buckets.get(i);
+			if (seen >= rank) return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) total.get() / n;
+	}
+
+	public void reset() {
+		for (int i = 0; i < buckets.length(); i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count %d, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us",
+				getCount(), getMean() / 1e3, percentile(0.5) / 1e3, percentile(0.9) / 1e3, percentile(0.99) / 1e3,
+				percentile(0.999) / 1e3, getMax() / 1e3);
+	}
+}
@@ -0,0 +1,17 @@
+package metrics;
+
+// steps of encoding or decoding a file, in the order they run
+public enum Phase {
+	// counting the symbols of the input
+	HISTOGRAM,
+	// codeword lengths from the counts
+	CODE_LENGTHS,
+	// canonical codewords from the lengths
+	CANONICAL_CODE,
+	// encode or decode lookup tables
+	TABLES,
+	// writing or reading the length table and symbol count
+	HEADER,
+	// the codeword loop
+	BITSTREAM
+}
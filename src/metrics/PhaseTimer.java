@@ -0,0 +1,57 @@
+package metrics;
+
+/*
+ * times the phases of one encode or decode call, each mark ends the phase
+ * running since the previous mark; without listeners or a recording of its
+ * event, CodecMetrics hands out DISABLED, whose marks return right away
+ */
+public class PhaseTimer {
+
+	public static final PhaseTimer DISABLED = new PhaseTimer(false);
+
+	private boolean enabled;
+	private long[] phaseNanos;
+	private long start;
+	private long last;
+	// Flight Recorder event of the call, null unless a recording had it enabled
+	// (a jdk.jfr.Event, typed Object so the class loads without jdk.jfr)
+	private Object event;
+
+	PhaseTimer(boolean enabled) {
+		this(enabled, null);
+	}
+
+	PhaseTimer(boolean enabled, Object event) {
+		this.enabled = enabled;
+		this.event = event;
+		if (enabled) {
+			this.phaseNanos = new long[Phase.values().length];
+			this.start = System.nanoTime();
+			this.last = start;
+		}
+	}
+
+	// the time since the previous mark went into phase
+	public void mark(Phase phase) {
+		if (!enabled) return;
+		long now = System.nanoTime();
+		phaseNanos[phase.ordinal()] += now - last;
+		last = now;
+	}
+
+	// report the call to the listeners and commit its event
+	public void finish(String operation, String file, long uncompressedBytes, long compressedBytes,
+			int maxCodeLength) {
+		if (!enabled) return;
+		CodecStats stats = new CodecStats(operation, file, phaseNanos, last - start, uncompressedBytes,
+				compressedBytes, maxCodeLength);
+		CodecMetrics.publish(stats);
+		if (event != null) {
+			FlightRecorderEvents.commit(event, stats);
+		}
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+}
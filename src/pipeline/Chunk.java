@@ -0,0 +1,18 @@
+package pipeline;
+
+import java.io.IOException;
+
+// a pooled buffer on its way from one stage to the next
+final class Chunk {
+
+	final byte[] data;
+	// bytes of data in use
+	int length;
+	// nothing follows this chunk, error tells why if the stream failed
+	boolean last;
+	IOException error;
+
+	Chunk(int size) {
+		this.data = new byte[size];
+	}
+}
@@ -0,0 +1,61 @@
+package pipeline;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * the fixed set of chunks two stages pass back and forth: the producer
+ * takes free ones and the consumer gives them back, so take blocks while
+ * all of them are on their way, which holds the faster stage back; no
+ * chunk is allocated after the pool is made
+ */
+final class ChunkPool {
+
+	static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+	static final int DEFAULT_DEPTH = 4;
+
+	private BlockingQueue<Chunk> free;
+	private int size;
+
+	ChunkPool(int chunkSize, int size) {
+		if (chunkSize < 1 || size < 2) {
+			throw new IllegalArgumentException("Invalid pipeline of " + size + " chunks of " + chunkSize + " bytes");
+		}
+		this.free = new ArrayBlockingQueue<Chunk>(size);
+		this.size = size;
+		for (int i = 0; i < size; i++) {
+			free.add(new Chunk(chunkSize));
+		}
+	}
+
+	Chunk take() throws InterruptedIOException {
+		try {
+			return free.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a buffer");
+		}
+	}
+
+	void give(Chunk chunk) {
+		chunk.length = 0;
+		chunk.last = false;
+		chunk.error = null;
+		free.add(chunk);
+	}
+
+	// a queue that holds every chunk of the pool, so putting never blocks
+	BlockingQueue<Chunk> newQueue() {
+		return new ArrayBlockingQueue<Chunk>(size);
+	}
+
+	static Chunk take(BlockingQueue<Chunk> queue) throws InterruptedIOException {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the pipeline");
+		}
+	}
+}
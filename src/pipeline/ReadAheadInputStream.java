@@ -0,0 +1,128 @@
+package pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * reader stage of a pipeline: a thread of its own reads the stream into
+ * pooled chunks up to depth chunks ahead of the caller, so a slow disk or
+ * network share is read while the caller codes what came before; the
+ * caller gets the bytes in order and a read error when it gets to it
+ *
+ * not thread-safe, one caller reads it
+ */
+public class ReadAheadInputStream extends InputStream {
+
+	private InputStream in;
+	private ChunkPool pool;
+	// chunks read, in stream order
+	private BlockingQueue<Chunk> filled;
+	private Thread reader;
+	// chunk the caller reads from and the position in it
+	private Chunk current;
+	private int position;
+	private boolean closed;
+
+	public ReadAheadInputStream(InputStream in) {
+		this(in, ChunkPool.DEFAULT_CHUNK_SIZE, ChunkPool.DEFAULT_DEPTH);
+	}
+
+	// depth chunks of chunkSize bytes, at least 2
+	public ReadAheadInputStream(InputStream in, int chunkSize, int depth) {
+		this.in = in;
+		this.pool = new ChunkPool(chunkSize, depth);
+		this.filled = pool.newQueue();
+		this.reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				fill();
+			}
+		}, "read-ahead");
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	// reader thread: every chunk as full as the stream allows, until it ends or fails
+	private void fill() {
+		try {
+			while (true) {
+				Chunk chunk = pool.take();
+				try {
+					int n;
+					while (chunk.length < chunk.data.length
+							&& (n = in.read(chunk.data, chunk.length, chunk.data.length - chunk.length)) >= 0) {
+						chunk.length += n;
+					}
+					chunk.last = chunk.length < chunk.data.length;
+				} catch (IOException e) {
+					chunk.last = true;
+					chunk.error = e;
+				}
+				filled.add(chunk);
+				if (chunk.last) return;
+			}
+		} catch (IOException e) {
+			// interrupted by close, nobody reads any more
+		}
+	}
+
+	// the chunk with the next byte, null at the end of the stream
+	private Chunk next() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		while (current == null || position == current.length) {
+			if (current != null) {
+				if (current.last) {
+					if (current.error != null) {
+						throw new IOException("Reading ahead failed", current.error);
+					}
+					return null;
+				}
+				pool.give(current);
+			}
+			current = ChunkPool.take(filled);
+			position = 0;
+		}
+		return current;
+	}
+
+	@Override
+	public int read() throws IOException {
+		Chunk chunk = next();
+		return chunk == null ? -1 : chunk.data[position++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) return 0;
+		Chunk chunk = next();
+		if (chunk == null) return -1;
+		int n = Math.min(len, chunk.length - position);
+		System.arraycopy(chunk.data, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	// bytes of the current chunk, the chunks behind it may still be on their way
+	@Override
+	public int available() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		return current == null ? 0 : current.length - position;
+	}
+
+	// stops the reader, closing the stream ends a read it's blocked in
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		reader.interrupt();
+		in.close();
+	}
+}
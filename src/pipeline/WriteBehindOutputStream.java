@@ -0,0 +1,162 @@
+package pipeline;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.BlockingQueue;
+
+/*
+ * writer stage of a pipeline: the caller fills pooled chunks and a thread
+ * of its own writes them to the stream in order, so the caller codes the
+ * next chunk while the last one is written; once depth chunks wait for
+ * the writer the caller waits too, a write error comes back from the
+ * next write, flush or close
+ *
+ * not thread-safe, one caller writes it
+ */
+public class WriteBehindOutputStream extends OutputStream {
+
+	private OutputStream out;
+	private ChunkPool pool;
+	// chunks to write, in stream order
+	private BlockingQueue<Chunk> full;
+	private Thread writer;
+	// chunk the caller fills, null until it writes again
+	private Chunk current;
+	// every chunk of the pool while flush waits for the writer
+	private Chunk[] held;
+	// first error of the writer, it skips everything after it
+	private volatile IOException error;
+	private boolean closed;
+
+	public WriteBehindOutputStream(OutputStream out) {
+		this(out, ChunkPool.DEFAULT_CHUNK_SIZE, ChunkPool.DEFAULT_DEPTH);
+	}
+
+	// depth chunks of chunkSize bytes, at least 2
+	public WriteBehindOutputStream(OutputStream out, int chunkSize, int depth) {
+		this.out = out;
+		this.pool = new ChunkPool(chunkSize, depth);
+		this.full = pool.newQueue();
+		this.held = new Chunk[depth];
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "write-behind");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	// writer thread: write every chunk until the last one
+	private void drain() {
+		try {
+			while (true) {
+				Chunk chunk = ChunkPool.take(full);
+				boolean last = chunk.last;
+				if (error == null && chunk.length > 0) {
+					try {
+						out.write(chunk.data, 0, chunk.length);
+					} catch (IOException e) {
+						error = e;
+					}
+				}
+				pool.give(chunk);
+				if (last) return;
+			}
+		} catch (IOException e) {
+			// interrupted, the caller has given up on the stream
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		Chunk chunk = current();
+		chunk.data[chunk.length++] = (byte) b;
+		if (chunk.length == chunk.data.length) handOff();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		while (len > 0) {
+			Chunk chunk = current();
+			int n = Math.min(len, chunk.data.length - chunk.length);
+			System.arraycopy(b, off, chunk.data, chunk.length, n);
+			chunk.length += n;
+			off += n;
+			len -= n;
+			if (chunk.length == chunk.data.length) handOff();
+		}
+	}
+
+	private Chunk current() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		checkError();
+		if (current == null) {
+			current = pool.take();
+		}
+		return current;
+	}
+
+	private void handOff() {
+		full.add(current);
+		current = null;
+	}
+
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw new IOException("Writing behind failed", error);
+		}
+	}
+
+	// waits until the writer has written everything so far, then flushes the stream
+	@Override
+	public void flush() throws IOException {
+		if (closed) {
+			throw new IOException("Stream closed");
+		}
+		if (current != null) handOff();
+		// every chunk back in the pool means the writer is idle
+		try {
+			for (int i = 0; i < held.length; i++) {
+				held[i] = pool.take();
+			}
+		} finally {
+			for (int i = 0; i < held.length && held[i] != null; i++) {
+				pool.give(held[i]);
+				held[i] = null;
+			}
+		}
+		checkError();
+		out.flush();
+	}
+
+	// writes what's left, waits for the writer and closes the stream
+	@Override
+	public void close() throws IOException {
+		if (closed) return;
+		closed = true;
+		try {
+			Chunk end = current != null ? current : pool.take();
+			current = null;
+			end.last = true;
+			full.add(end);
+			try {
+				writer.join();
+			} catch (InterruptedException e) {
+				writer.interrupt();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing behind");
+			}
+			checkError();
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+// one connection to a CompressionServer, requests are answered in order
+public class CompressionClient implements Closeable {
+
+	private Socket socket;
+	private DataInputStream in;
+	private DataOutputStream out;
+
+	public CompressionClient(int port) throws IOException {
+		this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	// with shared table tableId, 0 for a table of the message's own
+	public byte[] compress(byte[] src, int off, int len, int tableId) throws IOException {
+		return request(ServerProtocol.COMPRESS, tableId, src, off, len);
+	}
+
+	public byte[] decompress(byte[] message) throws IOException {
+		return request(ServerProtocol.DECOMPRESS, 0, message, 0, message.length);
+	}
+
+	// the server's request latency percentiles
+	public String stats() throws IOException {
+		return new String(request(ServerProtocol.STATS, 0, new byte[0], 0, 0), StandardCharsets.UTF_8);
+	}
+
+	private byte[] request(int operation, int tableId, byte[] payload, int off, int len) throws IOException {
+		ServerProtocol.writeRequest(out, operation, tableId, payload, off, len);
+		int status = in.readUnsignedByte();
+		byte[] response = ServerProtocol.readPayload(in);
+		if (status != ServerProtocol.OK) {
+			throw new IOException("Server error: " + new String(response, StandardCharsets.UTF_8));
+		}
+		return response;
+	}
+
+	@Override
+	public void close() throws IOException {
+		socket.close();
+	}
+}
@@ -0,0 +1,251 @@
+package server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import huffmanCanonical.SharedTables;
+import huffmanDecoder.MessageDecoder;
+import io.InsufficientBitsLeftException;
+import huffmanEncoder.MessageEncoder;
+import metrics.LatencyHistogram;
+
+/*
+ * long-running compression service on the loopback interface, so tools
+ * share one warmed-up JVM: every connection gets its own thread, virtual
+ * when the runtime has them, and all of them share one message encoder
+ * and decoder with their table caches
+ *
+ * usage: CompressionServer [port] [tableFile]
+ */
+public class CompressionServer {
+
+	private int port;
+	private MessageEncoder encoder;
+	private MessageDecoder decoder;
+	private LatencyHistogram latency;
+	private ServerSocket socket;
+	private ExecutorService connections;
+	// accepted connections still open, closed by stop
+	private Set<Socket> open;
+	// requests with larger payloads get an ERROR and the connection is closed
+	private int maxPayload;
+
+	public CompressionServer(int port, SharedTables tables) {
+		this.port = port;
+		this.encoder = new MessageEncoder(tables);
+		this.decoder = new MessageDecoder(tables);
+		this.latency = new LatencyHistogram();
+		this.maxPayload = ServerProtocol.MAX_PAYLOAD;
+		this.open = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+	}
+
+	// bind and start accepting connections in the background, port 0 picks a free port
+	public void start() throws IOException {
+		socket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		port = socket.getLocalPort();
+		connections = newConnectionExecutor();
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, "compression-server-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	// stop accepting and close every open connection, blocked reads fail and
+	// their threads exit
+	public void stop() throws IOException {
+		socket.close();
+		for (Socket connection : open) {
+			try {
+				connection.close();
+			} catch (IOException e) {
+			}
+		}
+		connections.shutdownNow();
+	}
+
+	private void accept() {
+		while (!socket.isClosed()) {
+			final Socket connection;
+			try {
+				connection = socket.accept();
+			} catch (IOException e) {
+				// closed by stop
+				return;
+			}
+			open.add(connection);
+			if (socket.isClosed()) {
+				// stop ran between accept and add
+				open.remove(connection);
+				try {
+					connection.close();
+				} catch (IOException e) {
+				}
+				return;
+			}
+			connections.execute(new Runnable() {
+				@Override
+				public void run() {
+					serve(connection);
+				}
+			});
+		}
+	}
+
+	// answer requests until the client closes the connection or breaks the framing
+	private void serve(Socket connection) {
+		try {
+			connection.setTcpNoDelay(true);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+			while (true) {
+				int operation = in.read();
+				if (operation < 0) break;
+				int tableId = in.readUnsignedShort();
+				int length = in.readInt();
+				if (length < 0 || length > maxPayload) {
+					// the payload isn't read, so the next request can't be found
+					ServerProtocol.writeResponse(out, ServerProtocol.ERROR, ("Invalid payload length " + length
+							+ ", at most " + maxPayload + " bytes").getBytes(StandardCharsets.UTF_8));
+					break;
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				long start = System.nanoTime();
+				byte[] result;
+				int status = ServerProtocol.OK;
+				try {
+					result = handle(operation, tableId, payload);
+				} catch (InsufficientBitsLeftException e) {
+					status = ServerProtocol.ERROR;
+					result = "Truncated message".getBytes(StandardCharsets.UTF_8);
+				} catch (IOException e) {
+					status = ServerProtocol.ERROR;
+					result = describe(e);
+				} catch (RuntimeException e) {
+					// corrupt payloads can fail in other ways, the connection stays usable
+					status = ServerProtocol.ERROR;
+					result = describe(e);
+				}
+				latency.record(System.nanoTime() - start);
+				if (result.length > ServerProtocol.MAX_PAYLOAD) {
+					// the client would reject the frame and lose the framing
+					status = ServerProtocol.ERROR;
+					result = ("Response of " + result.length + " bytes is over the limit of "
+							+ ServerProtocol.MAX_PAYLOAD + " bytes").getBytes(StandardCharsets.UTF_8);
+				}
+				ServerProtocol.writeResponse(out, status, result);
+			}
+		} catch (EOFException e) {
+			// client went away in the middle of a request
+		} catch (SocketException e) {
+			// connection reset or server stopped
+		} catch (IOException e) {
+			System.err.println("Closing connection: " + e.getMessage());
+		} finally {
+			open.remove(connection);
+			try {
+				connection.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	private byte[] handle(int operation, int tableId, byte[] payload)
+			throws InsufficientBitsLeftException, IOException {
+		switch (operation) {
+		case ServerProtocol.COMPRESS:
+			return tableId == 0 ? encoder.encode(payload, 0, payload.length)
+					: encoder.encode(payload, 0, payload.length, tableId);
+		case ServerProtocol.DECOMPRESS:
+			return decoder.decode(payload);
+		case ServerProtocol.STATS:
+			return latency.toString().getBytes(StandardCharsets.UTF_8);
+		default:
+			throw new IOException("Unknown operation " + operation);
+		}
+	}
+
+	// error message of a response, the exception's class when it has none
+	private static byte[] describe(Exception e) {
+		String message = e.getMessage() != null ? e.getMessage() : e.getClass().getName();
+		return message.getBytes(StandardCharsets.UTF_8);
+	}
+
+	// a virtual thread per task on Java 21 and later, found by reflection as
+	// the project compiles for Java 8; a cached pool of daemon threads otherwise
+	static ExecutorService newConnectionExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable task) {
+					Thread thread = new Thread(task, "compression-server-connection");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public LatencyHistogram getLatency() {
+		return latency;
+	}
+
+	public int getMaxPayload() {
+		return maxPayload;
+	}
+
+	// largest request payload in bytes, checked before the payload is allocated
+	public void setMaxPayload(int maxPayload) {
+		if (maxPayload < 0) {
+			throw new IllegalArgumentException("Invalid maximum payload " + maxPayload);
+		}
+		this.maxPayload = maxPayload;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : ServerProtocol.DEFAULT_PORT;
+		SharedTables tables = new SharedTables();
+		if (args.length > 1) {
+			InputStream in = new FileInputStream(args[1]);
+			try {
+				tables.read(in);
+			} finally {
+				in.close();
+			}
+		}
+		CompressionServer server = new CompressionServer(port, tables);
+		server.start();
+		System.out.println("Listening on " + InetAddress.getLoopbackAddress().getHostAddress() + ":" + server.getPort());
+		// the acceptor and connection threads are daemons, keep the JVM alive
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,63 @@
+package server;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+ * framing of the compression server, all numbers big-endian
+ *
+ * request:  operation (1 byte), table id (2 bytes), payload length (4 bytes), payload
+ * response: status (1 byte), payload length (4 bytes), payload
+ *
+ * COMPRESS answers with a message in the message format, coded with the
+ * shared table of the given id or an inline one for id 0; DECOMPRESS takes
+ * such a message; STATS answers with the server's latency percentiles as
+ * UTF-8 text; errors answer with the error message as UTF-8 text, a
+ * request with a payload over the server's limit is answered with an
+ * error and the connection is closed, a response over MAX_PAYLOAD is
+ * replaced by an error
+ */
+public class ServerProtocol {
+
+	public static final int COMPRESS = 'C';
+	public static final int DECOMPRESS = 'D';
+	public static final int STATS = 'S';
+
+	public static final int OK = 0;
+	public static final int ERROR = 1;
+
+	public static final int DEFAULT_PORT = 5900;
+	// default limit of payloads, so a bad length can't make either side allocate gigabytes
+	public static final int MAX_PAYLOAD = 1 << 26;
+
+	private ServerProtocol() {
+	}
+
+	public static void writeRequest(DataOutputStream out, int operation, int tableId, byte[] payload, int off,
+			int len) throws IOException {
+		out.writeByte(operation);
+		out.writeShort(tableId);
+		out.writeInt(len);
+		out.write(payload, off, len);
+		out.flush();
+	}
+
+	public static void writeResponse(DataOutputStream out, int status, byte[] payload) throws IOException {
+		out.writeByte(status);
+		out.writeInt(payload.length);
+		out.write(payload);
+		out.flush();
+	}
+
+	// payload of a frame whose length is read next
+	public static byte[] readPayload(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || length > MAX_PAYLOAD) {
+			throw new IOException("Invalid payload length " + length);
+		}
+		byte[] payload = new byte[length];
+		in.readFully(payload);
+		return payload;
+	}
+}
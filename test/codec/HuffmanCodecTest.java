@@ -0,0 +1,123 @@
+package codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HuffmanCodecTest {
+
+	private static byte[] text(int size, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 6)));
+		}
+		return data;
+	}
+
+	// compress and decompress data through buffers of the given order
+	private static void roundTrip(byte[] data, ByteOrder order, boolean direct) throws Exception {
+		HuffmanCodec codec = new HuffmanCodec();
+		ByteBuffer src = (direct ? ByteBuffer.allocateDirect(data.length) : ByteBuffer.allocate(data.length)).order(order);
+		src.put(data).flip();
+		int capacity = HuffmanCodec.maxCompressedLength(data.length);
+		ByteBuffer compressed = (direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity)).order(order);
+		int size = codec.compress(src, compressed);
+		assertEquals(size, compressed.position());
+		assertEquals(data.length, src.position());
+		compressed.flip();
+
+		ByteBuffer dst = ByteBuffer.allocate(data.length).order(order);
+		assertEquals(data.length, codec.decompress(compressed, dst));
+		assertEquals(size, compressed.position());
+		assertArrayEquals(data, dst.array());
+	}
+
+	@Test
+	public void bigEndianBuffers() throws Exception {
+		roundTrip(text(10000, 1), ByteOrder.BIG_ENDIAN, false);
+		roundTrip(text(10000, 2), ByteOrder.BIG_ENDIAN, true);
+	}
+
+	@Test
+	public void littleEndianBuffers() throws Exception {
+		roundTrip(text(10000, 3), ByteOrder.LITTLE_ENDIAN, false);
+		roundTrip(text(10000, 4), ByteOrder.LITTLE_ENDIAN, true);
+	}
+
+	@Test
+	public void littleEndianMessageIsTheSame() throws Exception {
+		byte[] data = text(5000, 5);
+		byte[][] messages = new byte[2][];
+		ByteOrder[] orders = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+		for (int k = 0; k < 2; k++) {
+			ByteBuffer dst = ByteBuffer.allocate(HuffmanCodec.maxCompressedLength(data.length)).order(orders[k]);
+			int size = new HuffmanCodec().compress(ByteBuffer.wrap(data).order(orders[k]), dst);
+			messages[k] = new byte[size];
+			System.arraycopy(dst.array(), 0, messages[k], 0, size);
+		}
+		assertArrayEquals(messages[0], messages[1]);
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		roundTrip(new byte[0], ByteOrder.BIG_ENDIAN, false);
+	}
+
+	@Test
+	public void oneSymbol() throws Exception {
+		roundTrip(new byte[] { 42 }, ByteOrder.BIG_ENDIAN, false);
+		byte[] same = new byte[4000];
+		Arrays.fill(same, (byte) 'x');
+		roundTrip(same, ByteOrder.LITTLE_ENDIAN, false);
+	}
+
+	@Test
+	public void nothingWrittenPastTheMessage() throws Exception {
+		byte[] data = text(3000, 6);
+		byte[] dst = new byte[HuffmanCodec.maxCompressedLength(data.length) + 16];
+		Arrays.fill(dst, (byte) 0x5a);
+		int size = new HuffmanCodec().compress(data, 0, data.length, dst, 3);
+		for (int i = 0; i < dst.length; i++) {
+			if (i < 3 || i >= 3 + size) {
+				assertEquals("byte " + i, 0x5a, dst[i]);
+			}
+		}
+	}
+
+	@Test
+	public void smallDestinationLeavesBuffersAlone() throws Exception {
+		byte[] data = text(3000, 7);
+		ByteBuffer src = ByteBuffer.wrap(data);
+		ByteBuffer dst = ByteBuffer.allocate(100);
+		try {
+			new HuffmanCodec().compress(src, dst);
+		} catch (BufferOverflowException e) {
+			assertEquals(0, src.position());
+			assertEquals(0, dst.position());
+			assertArrayEquals(new byte[100], dst.array());
+			return;
+		}
+		fail("expected BufferOverflowException");
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptMessage() throws Exception {
+		byte[] data = text(3000, 8);
+		byte[] compressed = new byte[HuffmanCodec.maxCompressedLength(data.length)];
+		HuffmanCodec codec = new HuffmanCodec();
+		int size = codec.compress(data, 0, data.length, compressed, 0);
+		// unknown shared table
+		compressed[0] = 0x7f;
+		codec.decompress(compressed, 0, size, new byte[data.length], 0);
+	}
+}
@@ -0,0 +1,74 @@
+package huffmanCanonical;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.ByteBufferBitSink;
+import io.ByteBufferBitSource;
+
+public class FileFormatTest {
+
+	private static byte[] countBytes(long count) throws IOException {
+		ByteBufferBitSink sink = new ByteBufferBitSink(16);
+		FileFormat.writeSymbolCount(sink, count);
+		return sink.toByteArray();
+	}
+
+	private static long readCount(byte[] bytes) throws Exception {
+		return FileFormat.readSymbolCount(new ByteBufferBitSource(bytes));
+	}
+
+	@Test
+	public void countsBelowTheEscapeKeepTheOldLayout() throws Exception {
+		long[] counts = { 0, 1, 1L << 31, FileFormat.COUNT_ESCAPE - 1 };
+		for (long count : counts) {
+			byte[] bytes = countBytes(count);
+			assertEquals(4, bytes.length);
+			assertEquals(count, readCount(bytes));
+		}
+		assertArrayEquals(new byte[] { (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xfe },
+				countBytes(FileFormat.COUNT_ESCAPE - 1));
+	}
+
+	@Test
+	public void largeCountsAreEscaped() throws Exception {
+		long[] counts = { FileFormat.COUNT_ESCAPE, 1L << 32, 5L << 40, Long.MAX_VALUE };
+		for (long count : counts) {
+			byte[] bytes = countBytes(count);
+			assertEquals(12, bytes.length);
+			assertEquals(count, readCount(bytes));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void negativeEscapedCountIsCorrupt() throws Exception {
+		byte[] bytes = countBytes(FileFormat.COUNT_ESCAPE);
+		bytes[4] = (byte) 0x80;
+		readCount(bytes);
+	}
+
+	@Test
+	public void lengthTables() throws Exception {
+		long[] counts = new long[FileFormat.ALPHABET_SIZE];
+		Random random = new Random(3);
+		for (int i = 0; i < counts.length; i += 1 + random.nextInt(4)) {
+			counts[i] = 1 + random.nextInt(1000);
+		}
+		int[] lengths = CodeLengths.build(counts);
+		for (boolean compact : new boolean[] { false, true }) {
+			ByteBufferBitSink sink = new ByteBufferBitSink(16);
+			FileFormat.writeLengths(sink, lengths, compact);
+			sink.padToByte();
+			byte[] bytes = sink.toByteArray();
+			if (!compact) {
+				assertEquals(FileFormat.ALPHABET_SIZE, bytes.length);
+			}
+			assertArrayEquals(lengths, FileFormat.readLengths(new ByteBufferBitSource(bytes)));
+		}
+	}
+}
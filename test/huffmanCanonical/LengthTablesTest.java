@@ -0,0 +1,81 @@
+package huffmanCanonical;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.ByteBufferBitSource;
+
+public class LengthTablesTest {
+
+	private static int[] lengthsOf(long seed, int used) {
+		Random random = new Random(seed);
+		long[] counts = new long[256];
+		for (int i = 0; i < used; i++) {
+			counts[random.nextInt(counts.length)] += 1 + random.nextInt(1 << random.nextInt(16));
+		}
+		return CodeLengths.build(counts);
+	}
+
+	private static int[] compactRoundTrip(int[] lengths) throws Exception {
+		byte[] bytes = CompactLengths.toByteArray(lengths);
+		return CompactLengths.read(new ByteBufferBitSource(bytes), lengths.length);
+	}
+
+	@Test
+	public void compactLengths() throws Exception {
+		// few symbols are listed, many are a bitmap
+		for (int used : new int[] { 1, 2, 5, 40, 200, 2000 }) {
+			for (long seed = 0; seed < 20; seed++) {
+				int[] lengths = lengthsOf(seed, used);
+				assertArrayEquals(lengths, compactRoundTrip(lengths));
+			}
+		}
+	}
+
+	@Test
+	public void compactLengthsOfEmptyAndSingleTables() throws Exception {
+		assertArrayEquals(new int[256], compactRoundTrip(new int[256]));
+		int[] one = new int[256];
+		one[200] = 1;
+		assertArrayEquals(one, compactRoundTrip(one));
+	}
+
+	@Test(expected = IOException.class)
+	public void corruptCompactLengths() throws Exception {
+		byte[] bytes = CompactLengths.toByteArray(lengthsOf(1, 3));
+		// width 7
+		bytes[0] |= (byte) 0xe0;
+		CompactLengths.read(new ByteBufferBitSource(bytes), 256);
+	}
+
+	@Test
+	public void contextLengths() throws Exception {
+		int[][] tables = { lengthsOf(1, 50), lengthsOf(2, 3), lengthsOf(3, 1000) };
+		int[] groupOf = new int[ContextLengths.CONTEXTS];
+		for (int context = 0; context < groupOf.length; context++) {
+			groupOf[context] = context % tables.length;
+		}
+		ContextLengths written = new ContextLengths(groupOf, tables);
+		ContextLengths read = ContextLengths.read(new ByteBufferBitSource(written.toByteArray()), 256);
+		assertEquals(tables.length, read.getGroupCount());
+		assertArrayEquals(groupOf, read.getGroupOf());
+		for (int group = 0; group < tables.length; group++) {
+			assertArrayEquals(tables[group], read.getLengths()[group]);
+		}
+	}
+
+	@Test
+	public void contextLengthsWithOneGroup() throws Exception {
+		int[][] tables = { lengthsOf(4, 100) };
+		ContextLengths written = new ContextLengths(new int[ContextLengths.CONTEXTS], tables);
+		ContextLengths read = ContextLengths.read(new ByteBufferBitSource(written.toByteArray()), 256);
+		assertEquals(1, read.getGroupCount());
+		assertArrayEquals(new int[ContextLengths.CONTEXTS], read.getGroupOf());
+		assertArrayEquals(tables[0], read.getLengths()[0]);
+	}
+}
@@ -0,0 +1,127 @@
+package huffmanDecoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import huffmanEncoder.AdaptiveOutputStream;
+
+public class AdaptiveStreamTest {
+
+	private static byte[] text(int size, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) ('a' + Math.min(25, (int) Math.abs(random.nextGaussian() * 5)));
+		}
+		return data;
+	}
+
+	// everything up to the END symbol
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int n;
+		while ((n = in.read(buffer)) != -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] both = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, both, a.length, b.length);
+		return both;
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		byte[] data = text(200000, 1);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveOutputStream out = new AdaptiveOutputStream(encoded);
+		out.write(data);
+		out.close();
+		assertArrayEquals(data, readAll(new AdaptiveInputStream(new ByteArrayInputStream(encoded.toByteArray()))));
+	}
+
+	@Test
+	public void flushMakesEverythingReadable() throws Exception {
+		byte[] first = text(3000, 2);
+		byte[] second = text(5000, 3);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveOutputStream out = new AdaptiveOutputStream(encoded);
+		out.write(first);
+		out.flush();
+		byte[] flushed = encoded.toByteArray();
+
+		// the bytes up to the FLUSH decode to everything written before it
+		AdaptiveInputStream in = new AdaptiveInputStream(new ByteArrayInputStream(flushed));
+		byte[] buffer = new byte[first.length + 100];
+		assertEquals(first.length, in.read(buffer));
+		assertArrayEquals(first, Arrays.copyOf(buffer, first.length));
+
+		out.write(second[0]);
+		out.write(second, 1, second.length - 1);
+		out.flush();
+		out.close();
+		in = new AdaptiveInputStream(new ByteArrayInputStream(encoded.toByteArray()));
+		assertArrayEquals(concat(first, second), readAll(in));
+	}
+
+	@Test
+	public void flushWithNothingPendingWritesNothing() throws Exception {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveOutputStream out = new AdaptiveOutputStream(encoded);
+		out.flush();
+		assertEquals(0, encoded.size());
+		out.write(text(10, 4));
+		out.flush();
+		int size = encoded.size();
+		out.flush();
+		assertEquals(size, encoded.size());
+		out.close();
+	}
+
+	@Test
+	public void emptyStream() throws Exception {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		new AdaptiveOutputStream(encoded).close();
+		InputStream in = new AdaptiveInputStream(new ByteArrayInputStream(encoded.toByteArray()));
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void oneSymbol() throws Exception {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveOutputStream out = new AdaptiveOutputStream(encoded);
+		out.write(0xff);
+		out.close();
+		InputStream in = new AdaptiveInputStream(new ByteArrayInputStream(encoded.toByteArray()));
+		assertEquals(0xff, in.read());
+		assertEquals(-1, in.read());
+	}
+
+	@Test(expected = IOException.class)
+	public void writeAfterClose() throws Exception {
+		AdaptiveOutputStream out = new AdaptiveOutputStream(new ByteArrayOutputStream());
+		out.close();
+		out.write(1);
+	}
+
+	@Test(expected = IOException.class)
+	public void missingEndMarker() throws Exception {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		AdaptiveOutputStream out = new AdaptiveOutputStream(encoded);
+		out.write(text(1000, 5));
+		out.flush();
+		readAll(new AdaptiveInputStream(new ByteArrayInputStream(encoded.toByteArray())));
+	}
+}
@@ -0,0 +1,145 @@
+package huffmanDecoder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import huffmanCanonical.BlockFormat;
+import huffmanEncoder.BlockEncoder;
+
+public class BlockContainerTest {
+
+	private static final ForkJoinPool POOL = new ForkJoinPool(2);
+
+	private static File temp(String suffix) throws IOException {
+		File file = File.createTempFile("block", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	private static byte[] text(int size, long seed) {
+		Random random = new Random(seed);
+		byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			// mostly runs of letters, so the context tables pay off
+			data[i] = i > 0 && random.nextInt(3) > 0 ? (byte) (data[i - 1] + 1) : (byte) ('a' + random.nextInt(20));
+		}
+		return data;
+	}
+
+	// encode data in blocks of blockSize, return the container file
+	private static File encode(byte[] data, int blockSize, boolean interleaved, boolean context) throws IOException {
+		File input = temp(".dat");
+		File encoded = temp(".enc");
+		Files.write(input.toPath(), data);
+		BlockEncoder encoder = new BlockEncoder(blockSize, POOL);
+		encoder.setInterleaved(interleaved);
+		encoder.setContext(context);
+		encoder.encode(input.getPath(), encoded.getPath());
+		return encoded;
+	}
+
+	// decode the container both block by block and in parallel
+	private static void assertDecodes(byte[] data, File encoded) throws Exception {
+		BlockDecoder decoder = new BlockDecoder(POOL);
+		File decoded = temp(".dec");
+		decoder.decode(encoded.getPath(), decoded.getPath());
+		assertArrayEquals(data, Files.readAllBytes(decoded.toPath()));
+		decoder.decodeParallel(encoded.getPath(), decoded.getPath());
+		assertArrayEquals(data, Files.readAllBytes(decoded.toPath()));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		byte[] data = text(100000, 1);
+		assertDecodes(data, encode(data, BlockFormat.MIN_BLOCK_SIZE * 8, false, false));
+		assertDecodes(data, encode(data, BlockFormat.DEFAULT_BLOCK_SIZE, false, false));
+	}
+
+	@Test
+	public void interleavedStreams() throws Exception {
+		byte[] data = text(100000, 2);
+		assertDecodes(data, encode(data, BlockFormat.MIN_BLOCK_SIZE * 8, true, false));
+	}
+
+	@Test
+	public void contextTables() throws Exception {
+		byte[] data = text(100000, 3);
+		assertDecodes(data, encode(data, BlockFormat.MIN_BLOCK_SIZE * 8, false, true));
+	}
+
+	@Test
+	public void lastBlockShorter() throws Exception {
+		byte[] data = text(BlockFormat.MIN_BLOCK_SIZE * 3 + 17, 4);
+		assertDecodes(data, encode(data, BlockFormat.MIN_BLOCK_SIZE, true, false));
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		assertDecodes(new byte[0], encode(new byte[0], BlockFormat.MIN_BLOCK_SIZE, false, false));
+	}
+
+	@Test
+	public void oneSymbol() throws Exception {
+		assertDecodes(new byte[] { 7 }, encode(new byte[] { 7 }, BlockFormat.MIN_BLOCK_SIZE, false, false));
+		byte[] same = new byte[5000];
+		assertDecodes(same, encode(same, BlockFormat.MIN_BLOCK_SIZE, true, false));
+		assertDecodes(same, encode(same, BlockFormat.MIN_BLOCK_SIZE, false, true));
+	}
+
+	// overwrite size bytes at offset from the end of the file with value
+	private static void corrupt(File file, long fromEnd, int size, long value) throws IOException {
+		RandomAccessFile access = new RandomAccessFile(file, "rw");
+		try {
+			access.seek(access.length() - fromEnd);
+			if (size == 8) {
+				access.writeLong(value);
+			} else {
+				access.writeInt((int) value);
+			}
+		} finally {
+			access.close();
+		}
+	}
+
+	private static void assertRejected(File encoded) throws Exception {
+		try {
+			new BlockDecoder(POOL).decodeParallel(encoded.getPath(), temp(".dec").getPath());
+		} catch (IOException e) {
+			return;
+		}
+		fail("corrupt index accepted");
+	}
+
+	@Test
+	public void corruptIndex() throws Exception {
+		byte[] data = text(20000, 5);
+		int footer = BlockFormat.INDEX_FOOTER_SIZE;
+		int entry = BlockFormat.INDEX_ENTRY_SIZE;
+		int blocks = (data.length + BlockFormat.MIN_BLOCK_SIZE - 1) / BlockFormat.MIN_BLOCK_SIZE;
+		long[][] cases = {
+				// index offset past the end, before the header, negative
+				{ footer, 8, 1L << 40 }, { footer, 8, 2 }, { footer, 8, -1 },
+				// block count too large, negative, overflowing the index size
+				{ footer + blocks * entry + 4, 4, blocks + 1 }, { footer + blocks * entry + 4, 4, -1 },
+				{ footer + blocks * entry + 4, 4, Integer.MAX_VALUE },
+				// offset of the last block past the index, bits negative, size larger than a block
+				{ footer + entry, 8, 1L << 40 }, { footer + entry - 8, 8, -1 },
+				{ footer + entry - 16, 4, BlockFormat.MIN_BLOCK_SIZE + 1 },
+				// offset of the last block pointing at the first
+				{ footer + entry, 8, 8 } };
+		for (long[] c : cases) {
+			File encoded = encode(data, BlockFormat.MIN_BLOCK_SIZE, false, false);
+			corrupt(encoded, c[0], (int) c[1], c[2]);
+			assertRejected(encoded);
+		}
+	}
+}
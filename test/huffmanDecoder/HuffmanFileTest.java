@@ -0,0 +1,57 @@
+package huffmanDecoder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Test;
+
+import huffmanEncoder.HuffmanEncoder;
+
+public class HuffmanFileTest {
+
+	private static File temp(String suffix) throws IOException {
+		File file = File.createTempFile("huffman", suffix);
+		file.deleteOnExit();
+		return file;
+	}
+
+	// encode data to the single table format and decode it back
+	private static void assertRoundTrip(byte[] data, boolean compactHeader) throws Exception {
+		File input = temp(".dat");
+		File encoded = temp(".enc");
+		File decoded = temp(".dec");
+		Files.write(input.toPath(), data);
+		HuffmanEncoder encoder = new HuffmanEncoder(input.getPath(), encoded.getPath());
+		encoder.setCompactHeader(compactHeader);
+		encoder.encode();
+		new HuffmanDecoder(encoded.getPath(), decoded.getPath()).decode();
+		assertArrayEquals(data, Files.readAllBytes(decoded.toPath()));
+	}
+
+	@Test
+	public void roundTrip() throws Exception {
+		byte[] data = new byte[300000];
+		Random random = new Random(1);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) Math.min(255, (int) Math.abs(random.nextGaussian() * 40));
+		}
+		assertRoundTrip(data, false);
+		assertRoundTrip(data, true);
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		assertRoundTrip(new byte[0], false);
+		assertRoundTrip(new byte[0], true);
+	}
+
+	@Test
+	public void oneSymbol() throws Exception {
+		assertRoundTrip(new byte[] { 1 }, true);
+		assertRoundTrip(new byte[1000], false);
+	}
+}
@@ -0,0 +1,70 @@
+package huffmanDecoder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import huffmanEncoder.WideEncoder;
+import io.InsufficientBitsLeftException;
+
+public class WideDecoderTest {
+
+	private static int[] roundTrip(int alphabetSize, int[] symbols) throws Exception {
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		new WideEncoder(alphabetSize).encode(symbols, 0, symbols.length, encoded);
+		return WideDecoder.decode(new ByteArrayInputStream(encoded.toByteArray()));
+	}
+
+	// skewed symbols, a few of them far apart in the alphabet
+	private static int[] symbols(int count, int alphabetSize, long seed) {
+		Random random = new Random(seed);
+		int[] symbols = new int[count];
+		for (int i = 0; i < count; i++) {
+			int rank = (int) Math.min(alphabetSize - 1, (long) Math.abs(random.nextGaussian() * 300));
+			symbols[i] = random.nextInt(50) == 0 ? alphabetSize - 1 - rank : rank;
+		}
+		return symbols;
+	}
+
+	@Test
+	public void denseAlphabet() throws Exception {
+		int[] symbols = symbols(100000, 1 << 16, 1);
+		assertArrayEquals(symbols, roundTrip(1 << 16, symbols));
+	}
+
+	@Test
+	public void sparseAlphabet() throws Exception {
+		int[] symbols = symbols(100000, Integer.MAX_VALUE, 2);
+		assertArrayEquals(symbols, roundTrip(Integer.MAX_VALUE, symbols));
+	}
+
+	@Test
+	public void emptyInput() throws Exception {
+		assertArrayEquals(new int[0], roundTrip(1000, new int[0]));
+	}
+
+	@Test
+	public void oneSymbol() throws Exception {
+		assertArrayEquals(new int[] { 999 }, roundTrip(1000, new int[] { 999 }));
+		int[] same = new int[3000];
+		assertArrayEquals(same, roundTrip(1 << 20, same));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void symbolOutsideTheAlphabet() throws Exception {
+		roundTrip(1000, new int[] { 1, 1000 });
+	}
+
+	@Test(expected = InsufficientBitsLeftException.class)
+	public void truncatedInput() throws Exception {
+		int[] symbols = symbols(10000, 1 << 16, 3);
+		ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+		new WideEncoder(1 << 16).encode(symbols, 0, symbols.length, encoded);
+		byte[] bytes = encoded.toByteArray();
+		WideDecoder.decode(new ByteArrayInputStream(bytes, 0, bytes.length / 2));
+	}
+}
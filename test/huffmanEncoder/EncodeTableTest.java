@@ -0,0 +1,46 @@
+package huffmanEncoder;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+import huffmanCanonical.CanonicalCode;
+import huffmanCanonical.CodeLengths;
+import io.ByteBufferBitSink;
+
+public class EncodeTableTest {
+
+	private static byte[] encode(EncodeTable table, ByteBuffer buffer, int start, int end) throws Exception {
+		ByteBufferBitSink sink = new ByteBufferBitSink(16);
+		table.encode(buffer, start, end, sink);
+		sink.padToByte();
+		return sink.toByteArray();
+	}
+
+	@Test
+	public void buffersOfEitherOrderMatchTheArray() throws Exception {
+		byte[] data = new byte[1001];
+		new Random(1).nextBytes(data);
+		long[] counts = new long[256];
+		Histogram.count(data, 0, data.length, counts);
+		for (boolean pairs : new boolean[] { false, true }) {
+			EncodeTable table = new EncodeTable(new CanonicalCode(CodeLengths.build(counts)), pairs);
+			ByteBufferBitSink sink = new ByteBufferBitSink(16);
+			table.encode(data, 1, data.length - 1, sink);
+			sink.padToByte();
+			byte[] expected = sink.toByteArray();
+
+			ByteBuffer big = ByteBuffer.wrap(data);
+			ByteBuffer little = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+			ByteBuffer direct = ByteBuffer.allocateDirect(data.length).order(ByteOrder.LITTLE_ENDIAN);
+			direct.put(data);
+			assertArrayEquals(expected, encode(table, big, 1, data.length));
+			assertArrayEquals(expected, encode(table, little, 1, data.length));
+			assertArrayEquals(expected, encode(table, direct, 1, data.length));
+		}
+	}
+}
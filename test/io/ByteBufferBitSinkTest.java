@@ -0,0 +1,96 @@
+package io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ByteBufferBitSinkTest {
+
+	// sink into and source from a buffer of the given order, with 5 guard bytes
+	// before the output and 20 after it that must stay untouched
+	private static void roundTrip(ByteOrder order, long seed) throws Exception {
+		Random random = new Random(seed);
+		int n = random.nextInt(300);
+		long[] values = new long[n];
+		int[] lengths = new int[n];
+		long bits = 0;
+		for (int i = 0; i < n; i++) {
+			lengths[i] = 1 + random.nextInt(57);
+			values[i] = random.nextLong() & ((1L << lengths[i]) - 1);
+			bits += lengths[i];
+		}
+		int size = (int) ((bits + 7) / 8);
+		ByteBuffer buffer = ByteBuffer.allocate(5 + size + 20).order(order);
+		for (int i = 0; i < buffer.capacity(); i++) {
+			buffer.put(i, (byte) 0x5a);
+		}
+		buffer.position(5);
+		ByteBufferBitSink sink = new ByteBufferBitSink(buffer);
+		for (int i = 0; i < n; i++) {
+			sink.write(values[i], lengths[i]);
+		}
+		sink.padToByte();
+		assertEquals(size, sink.size());
+		for (int i = 0; i < buffer.capacity(); i++) {
+			if (i < 5 || i >= 5 + size) {
+				assertEquals("guard byte " + i, 0x5a, buffer.get(i));
+			}
+		}
+
+		ByteBuffer encoded = buffer.duplicate().order(order);
+		encoded.position(5);
+		encoded.limit(5 + size);
+		ByteBufferBitSource source = new ByteBufferBitSource(encoded);
+		for (int i = 0; i < n; i++) {
+			long value = lengths[i] > 32
+					? ((long) source.next(lengths[i] - 32) << 32) | (source.next(32) & 0xffffffffL)
+					: source.next(lengths[i]) & 0xffffffffL;
+			assertEquals("value " + i, values[i], value);
+		}
+	}
+
+	@Test
+	public void bigEndianRoundTrip() throws Exception {
+		for (int seed = 0; seed < 200; seed++) {
+			roundTrip(ByteOrder.BIG_ENDIAN, seed);
+		}
+	}
+
+	@Test
+	public void littleEndianRoundTrip() throws Exception {
+		for (int seed = 0; seed < 200; seed++) {
+			roundTrip(ByteOrder.LITTLE_ENDIAN, seed);
+		}
+	}
+
+	@Test
+	public void byteOrderDoesNotChangeTheStream() throws Exception {
+		byte[][] streams = new byte[2][];
+		ByteOrder[] orders = { ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN };
+		for (int k = 0; k < 2; k++) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(64).order(orders[k]);
+			ByteBufferBitSink sink = new ByteBufferBitSink(buffer);
+			sink.write(0x1234567, 27);
+			sink.write(0xabcdef0123L, 40);
+			sink.write(1, 1);
+			sink.padToByte();
+			streams[k] = sink.toByteArray();
+		}
+		assertArrayEquals(streams[0], streams[1]);
+		assertArrayEquals(new byte[] { 0x24, 0x68, (byte) 0xac, (byte) 0xf5, 0x79, (byte) 0xbd, (byte) 0xe0,
+				0x24, 0x70 }, streams[0]);
+	}
+
+	@Test
+	public void emptySink() throws Exception {
+		ByteBufferBitSink sink = new ByteBufferBitSink(ByteBuffer.allocate(0));
+		sink.padToByte();
+		assertEquals(0, sink.size());
+		assertEquals(0, sink.toByteArray().length);
+	}
+}